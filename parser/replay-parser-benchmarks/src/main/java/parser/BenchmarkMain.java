@@ -0,0 +1,27 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * The benchmarks jar's entry point: JMH's own, except that
+ * ReplayParseBenchmark only runs when a replay is passed with
+ * -p replay=..., so a plain run needs nothing but the jar.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (jmhArgs.stream().noneMatch(a -> a.contains("replay="))) {
+            jmhArgs.add("-e");
+            jmhArgs.add(ReplayParseBenchmark.class.getSimpleName());
+        }
+        Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,85 @@
+package parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import skadistats.clarity.model.DTClass;
+import skadistats.clarity.processor.runner.Context;
+
+import parser.Fixtures.FixtureEntity;
+
+/**
+ * BuildingTracker on all 36 building entities: the update path, which is
+ * what a tick with building changes costs now that the per-snapshot scan is
+ * gone, and the create/delete path that classifies a building into its
+ * slot and reads its position.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildingBenchmark {
+
+    @Param({"true", "false"})
+    public boolean caching;
+
+    private MatchState state;
+    private BuildingTracker tracker;
+    private FixtureEntity[] buildings;
+
+    @Setup
+    public void setup() {
+        DTClass towerClass = Fixtures.dtClass("CDOTA_BaseNPC_Tower", Fixtures.BUILDING_PROPERTIES, 1);
+        buildings = new FixtureEntity[Fixtures.BUILDING_NAMES.length];
+        for (int b = 0; b < buildings.length; b++) {
+            buildings[b] = new FixtureEntity(200 + b, towerClass)
+                .set("m_iHealth", 1800)
+                .set("m_iTeamNum", b < MatchState.BUILDING_SLOTS ? 2 : 3)
+                .set("m_pEntity.m_nameStringableIndex", b)
+                .set("CBodyComponent.m_cellX", 64 + b)
+                .set("CBodyComponent.m_cellY", 96 - b)
+                .set("CBodyComponent.m_vecX", 16f)
+                .set("CBodyComponent.m_vecY", 48f);
+        }
+        state = new MatchState();
+        tracker = new BuildingTracker(state, new FieldPathCache(caching)) {
+            @Override
+            String entityName(Context ctx, int nameIdx) {
+                return Fixtures.BUILDING_NAMES[nameIdx];
+            }
+        };
+        for (FixtureEntity building : buildings) {
+            tracker.onCreated(null, building);
+        }
+    }
+
+    @Benchmark
+    public MatchState updateAll() {
+        for (FixtureEntity building : buildings) {
+            tracker.onUpdated(null, building, null, 0);
+        }
+        return state;
+    }
+
+    @Benchmark
+    public MatchState recreateAll() {
+        for (FixtureEntity building : buildings) {
+            tracker.onDeleted(null, building);
+            tracker.onCreated(null, building);
+        }
+        return state;
+    }
+}
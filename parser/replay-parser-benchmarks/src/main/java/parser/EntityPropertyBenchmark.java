@@ -0,0 +1,118 @@
+package parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import skadistats.clarity.io.Util;
+import skadistats.clarity.model.DTClass;
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.processor.runner.Context;
+
+import parser.Fixtures.FixtureEntity;
+
+/**
+ * Property reads of one sampled tick: every per-player PlayerResource field
+ * through ReplayParser.getEntityProperty, and the hero inventories through
+ * InventoryReader (item handles, item entities and their charges).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityPropertyBenchmark {
+
+    private static final int ITEM_INDEX = 1000;
+
+    @Param({"true", "false"})
+    public boolean caching;
+
+    private ReplayParser parser;
+    private Entity playerResource;
+    private Entity[] heroes;
+    private InventoryReader inventory;
+    private MatchState state;
+
+    @Setup
+    public void setup() {
+        parser = new ReplayParser("benchmark.dem", 30, "benchmark.json");
+        parser.setFieldPathCaching(caching);
+        FixtureEntity resource = new FixtureEntity(1, Fixtures.dtClass("CDOTA_PlayerResource", Fixtures.PLAYER_RESOURCE_TEMPLATES, 64));
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            for (String template : Fixtures.PLAYER_RESOURCE_TEMPLATES) {
+                String name = template.replace("%i", Util.arrayIdxToString(p));
+                if (template.contains("m_fl")) {
+                    resource.set(name, 0.5f + p);
+                } else {
+                    resource.set(name, 100 + p);
+                }
+            }
+        }
+        playerResource = resource;
+
+        // six items per hero, two empty slots
+        DTClass itemClass = Fixtures.dtClass("CDOTA_Item", Fixtures.ITEM_PROPERTIES, 1);
+        Entity[] items = new Entity[MatchState.PLAYERS * 6];
+        String[] itemNames = new String[items.length];
+        heroes = new Entity[MatchState.PLAYERS];
+        for (int p = 0; p < heroes.length; p++) {
+            FixtureEntity hero = new FixtureEntity(10 + p, Fixtures.dtClass("CDOTA_Unit_Hero_" + p, new String[] {Fixtures.ITEM_TEMPLATE}, 36));
+            for (int slot = 0; slot < MatchState.INVENTORY_SLOTS; slot++) {
+                int handle = 0xFFFFFF;
+                if (slot < 6) {
+                    int i = p * 6 + slot;
+                    items[i] = new FixtureEntity(ITEM_INDEX + i, itemClass)
+                        .set("m_iCurrentCharges", slot)
+                        .set("m_iSecondaryCharges", 0)
+                        .set("m_pEntity.m_nameStringableIndex", i);
+                    itemNames[i] = "item_" + i;
+                    handle = ITEM_INDEX + i;
+                }
+                hero.set(Fixtures.ITEM_TEMPLATE.replace("%i", Util.arrayIdxToString(slot)), handle);
+            }
+            heroes[p] = hero;
+        }
+        inventory = new InventoryReader(new FieldPathCache(caching)) {
+            @Override
+            Entity entityByHandle(Context ctx, int handle) {
+                return items[handle - ITEM_INDEX];
+            }
+
+            @Override
+            String entityName(Context ctx, int nameIdx) {
+                return itemNames[nameIdx];
+            }
+        };
+        state = new MatchState();
+    }
+
+    @Benchmark
+    public void playerResource(Blackhole bh) {
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            for (String template : Fixtures.PLAYER_RESOURCE_TEMPLATES) {
+                bh.consume(parser.<Object>getEntityProperty(playerResource, template, p));
+            }
+        }
+    }
+
+    @Benchmark
+    public MatchState heroInventory() {
+        for (int p = 0; p < heroes.length; p++) {
+            inventory.read(null, heroes[p], state, p);
+        }
+        return state;
+    }
+}
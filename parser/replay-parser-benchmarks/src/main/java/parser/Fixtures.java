@@ -0,0 +1,175 @@
+package parser;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import skadistats.clarity.io.Util;
+import skadistats.clarity.model.DTClass;
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.model.FieldPath;
+
+/**
+ * Synthetic stand-ins for what a replay would provide, so the benchmarks
+ * run offline without a .dem file.
+ */
+final class Fixtures {
+
+    static final String[] PLAYER_RESOURCE_TEMPLATES = {
+        "m_vecPlayerData.%i.m_iPlayerTeam",
+        "m_vecPlayerTeamData.%i.m_iTeamSlot",
+        "m_vecPlayerTeamData.%i.m_nSelectedHeroID",
+        "m_vecPlayerTeamData.%i.m_nSelectedHeroVariant",
+        "m_vecPlayerTeamData.%i.m_hSelectedHero",
+        "m_vecPlayerTeamData.%i.m_iLevel",
+        "m_vecPlayerTeamData.%i.m_iKills",
+        "m_vecPlayerTeamData.%i.m_iDeaths",
+        "m_vecPlayerTeamData.%i.m_iAssists",
+        "m_vecPlayerTeamData.%i.m_flTeamFightParticipation",
+        "m_vecPlayerTeamData.%i.m_iRespawnSeconds"
+    };
+
+    static final String ITEM_TEMPLATE = "m_hItems.%i";
+
+    static final String[] ITEM_PROPERTIES = {
+        "m_iCurrentCharges", "m_iSecondaryCharges", "m_pEntity.m_nameStringableIndex"
+    };
+
+    static final String[] BUILDING_PROPERTIES = {
+        "m_iHealth", "m_iTeamNum", "m_pEntity.m_nameStringableIndex",
+        "CBodyComponent.m_cellX", "CBodyComponent.m_cellY", "CBodyComponent.m_vecX", "CBodyComponent.m_vecY"
+    };
+
+    static final String[] BUILDING_NAMES = buildingNames();
+
+    private Fixtures() {
+    }
+
+    /**
+     * A DTClass that knows the given templates for indices 0..count-1 and
+     * hands out one opaque FieldPath per property name.
+     */
+    static DTClass dtClass(String dtName, String[] templates, int count) {
+        Map<String, FieldPath> paths = new HashMap<>();
+        for (String template : templates) {
+            for (int i = 0; i < count; i++) {
+                String name = template.replace("%i", Util.arrayIdxToString(i));
+                paths.put(name, fieldPath(name));
+            }
+        }
+        return (DTClass) Proxy.newProxyInstance(DTClass.class.getClassLoader(), new Class<?>[] {DTClass.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDtName": return dtName;
+                    case "getFieldPathForName": return paths.get((String) args[0]);
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    case "toString": return dtName;
+                    default: return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    /**
+     * An entity of a Fixtures.dtClass whose property values are set by name
+     * and read back through getPropertyForFieldPath, like a decoded entity.
+     * Its handle is its index.
+     */
+    static final class FixtureEntity extends Entity {
+
+        private final Map<FieldPath, Object> values = new HashMap<>();
+
+        FixtureEntity(int index, DTClass dtClass) {
+            super(index, 0, index, dtClass);
+        }
+
+        FixtureEntity set(String property, Object value) {
+            values.put(getDtClass().getFieldPathForName(property), value);
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getPropertyForFieldPath(FieldPath fp) {
+            return (T) values.get(fp);
+        }
+    }
+
+    private static FieldPath fieldPath(String name) {
+        return (FieldPath) Proxy.newProxyInstance(FieldPath.class.getClassLoader(), new Class<?>[] {FieldPath.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "hashCode": return name.hashCode();
+                    case "equals": return proxy == args[0];
+                    case "toString": return name;
+                    default: return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    /**
+     * A mid-game tick: ten players with full stats, six items each, a few
+     * destroyed buildings and some observer wards.
+     */
+    static MatchState midGameState() {
+        MatchState s = new MatchState();
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            int teamId = p < 5 ? 2 : 3;
+            s.setInt(p, MatchState.VALUE, (teamId == 2 ? 0 : 128) + p % 5);
+            s.setInt(p, MatchState.TEAM, teamId);
+            s.names[p] = "player" + p;
+            s.setSteamId(p, 76561198000000000L + p);
+            s.units[p] = "CDOTA_Unit_Hero_" + p;
+            for (int f = MatchState.HERO_ID; f < MatchState.INT_FIELDS; f++) {
+                s.setInt(p, f, 1000 * p + f);
+            }
+            for (int f = 0; f < MatchState.FLOAT_FIELDS; f++) {
+                s.setFloat(p, f, 64.5f + p + f / 8f);
+            }
+            for (int slot = 0; slot < 6; slot++) {
+                s.setItem(p, slot, "item_" + slot, slot % 3, 0);
+            }
+            s.addToRoster(p, teamId);
+        }
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            for (int slot = 0; slot < MatchState.BUILDING_SLOTS; slot++) {
+                int b = t * MatchState.BUILDING_SLOTS + slot;
+                s.buildingNames[b] = BUILDING_NAMES[b];
+                s.buildingHealth[b] = slot % 4 == 0 ? 0 : 1800;
+            }
+            for (int w = 0; w < 4; w++) {
+                s.addWard(t, 100f + w, 120f - w);
+            }
+            s.addTeamTotal(t, MatchState.TOWERS_KILLED, 3);
+        }
+        return s;
+    }
+
+    private static String[] buildingNames() {
+        List<String> names = new ArrayList<>();
+        for (String side : new String[] {"goodguys", "badguys"}) {
+            for (String lane : new String[] {"top", "mid", "bot"}) {
+                for (int tier = 1; tier <= 3; tier++) {
+                    names.add("dota_" + side + "_tower" + tier + "_" + lane);
+                }
+            }
+            names.add("dota_" + side + "_tower4_top");
+            names.add("dota_" + side + "_tower4_bot");
+            for (String lane : new String[] {"top", "mid", "bot"}) {
+                names.add(side.equals("goodguys") ? "good_rax_melee_" + lane : "bad_rax_melee_" + lane);
+                names.add(side.equals("goodguys") ? "good_rax_range_" + lane : "bad_rax_range_" + lane);
+            }
+            names.add("dota_" + side + "_fort");
+        }
+        return names.toArray(new String[0]);
+    }
+}
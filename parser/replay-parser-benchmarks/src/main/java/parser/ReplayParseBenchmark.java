@@ -0,0 +1,73 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end parse of one replay. Replays are too large to commit, so pass
+ * one in: java -jar target/benchmarks.jar ReplayParseBenchmark -p replay=match.dem
+ * (BenchmarkMain leaves this benchmark out of runs without a replay).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ReplayParseBenchmark {
+
+    @Param({""})
+    public String replay;
+
+    @Param({"json", "ndjson", "binary", "columnar", "delta"})
+    public String format;
+
+    @Param({"true", "false"})
+    public boolean caching;
+
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        if (replay.isEmpty() || !new File(replay).isFile()) {
+            throw new IllegalStateException("Pass a replay with -p replay=<replay.dem[.bz2|.zst]>");
+        }
+        output = File.createTempFile("replay-parse-bench", OutputFormat.fromName(format).extension);
+        output.delete();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(output);
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        ReplayParser parser = new ReplayParser(replay, 30, output.getPath(), OutputFormat.fromName(format));
+        parser.setFieldPathCaching(caching);
+        parser.parse();
+        return parser.getTicksProcessed();
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) delete(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,74 @@
+package parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import parser.ReplayParser.Team;
+
+/**
+ * Output-stage cost of one snapshot of a mid-game MatchState: streaming it
+ * as JSON, and building the Team/Player objects (the per-snapshot team copy
+ * the old object model paid on every sample).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private MatchState state;
+    private JsonGenerator gen;
+    private SnapshotWriter writer;
+    private int matchTime;
+
+    @Setup
+    public void setup() throws IOException {
+        state = Fixtures.midGameState();
+        gen = new JsonFactory().createGenerator(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        writer = new SnapshotWriter(gen);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        gen.writeEndObject();
+        gen.close();
+    }
+
+    @Benchmark
+    public void writeJson() throws IOException {
+        writer.write(matchTime++, state);
+    }
+
+    @Benchmark
+    public Team[] toTeams() {
+        return new Team[] {state.toTeam(0), state.toTeam(1)};
+    }
+}
@@ -0,0 +1,114 @@
+package parser;
+
+import skadistats.clarity.model.CombatLogEntry;
+import skadistats.clarity.processor.gameevents.OnCombatLogEntry;
+import skadistats.clarity.processor.runner.Context;
+
+/**
+ * Samples every quietTicks during quiet play and every activeTicks while a
+ * fight or objective is going on.
+ *
+ * Activity comes from the combat log: a hero, building or Roshan dying, or
+ * heroes dealing more than FIGHT_DAMAGE damage to each other within
+ * FIGHT_WINDOW_TICKS. Each of these keeps the dense rate for holdTicks.
+ * Register the scheduler with the runner so it receives combat log entries,
+ * and reset it when the runner seeks back.
+ */
+public class AdaptiveScheduler implements SamplingScheduler {
+
+    static final int DEFAULT_HOLD_TICKS = 20 * ReplayParser.TICK_RATE;
+    static final int FIGHT_WINDOW_TICKS = 5 * ReplayParser.TICK_RATE;
+    static final int FIGHT_DAMAGE = 1500;
+
+    private final int quietTicks;
+    private final int activeTicks;
+    private final int holdTicks;
+
+    private int nextTick = -1;
+    private int activeUntil = -1;
+    private int damageWindowStart = -1;
+    private int damageInWindow = 0;
+
+    public AdaptiveScheduler(int quietTicks, int activeTicks) {
+        this(quietTicks, activeTicks, DEFAULT_HOLD_TICKS);
+    }
+
+    public AdaptiveScheduler(int quietTicks, int activeTicks, int holdTicks) {
+        if (activeTicks < 1 || quietTicks < activeTicks) {
+            throw new IllegalArgumentException("Need 0 < activeTicks <= quietTicks");
+        }
+        this.quietTicks = quietTicks;
+        this.activeTicks = activeTicks;
+        this.holdTicks = holdTicks;
+    }
+
+    @OnCombatLogEntry
+    public void onCombatLogEntry(Context ctx, CombatLogEntry cle) {
+        int tick = ctx.getTick();
+        switch (cle.getType().name()) {
+            case "DOTA_COMBATLOG_DEATH":
+                if ((cle.isTargetHero() && !cle.isTargetIllusion()) || isObjective(cle.getTargetName())) {
+                    markActive(tick);
+                }
+                break;
+            case "DOTA_COMBATLOG_DAMAGE":
+                if (cle.isAttackerHero() && cle.isTargetHero() && !cle.isTargetIllusion()) {
+                    addFightDamage(tick, cle.getValue());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    void addFightDamage(int tick, int damage) {
+        // a window that starts after tick was left behind by a seek
+        if (tick - damageWindowStart > FIGHT_WINDOW_TICKS || tick < damageWindowStart) {
+            damageWindowStart = tick;
+            damageInWindow = 0;
+        }
+        damageInWindow += damage;
+        if (damageInWindow >= FIGHT_DAMAGE) {
+            markActive(tick);
+        }
+    }
+
+    void markActive(int tick) {
+        activeUntil = Math.max(activeUntil, tick + holdTicks);
+        // pull the next sample in instead of waiting out the quiet interval
+        if (nextTick >= 0) {
+            nextTick = Math.min(nextTick, FixedIntervalScheduler.ceilToGrid(tick, activeTicks));
+        }
+    }
+
+    @Override
+    public boolean shouldSample(int tick) {
+        int interval = tick < activeUntil ? activeTicks : quietTicks;
+        if (nextTick < 0) {
+            nextTick = FixedIntervalScheduler.ceilToGrid(tick, interval);
+        }
+        if (tick < nextTick) {
+            return false;
+        }
+        nextTick = (tick / interval + 1) * interval;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        nextTick = -1;
+        activeUntil = -1;
+        damageWindowStart = -1;
+        damageInWindow = 0;
+    }
+
+    @Override
+    public boolean isSubSecond() {
+        return activeTicks % ReplayParser.TICK_RATE != 0 || quietTicks % ReplayParser.TICK_RATE != 0;
+    }
+
+    static boolean isObjective(String targetName) {
+        return targetName != null && (targetName.contains("_tower") || targetName.contains("_rax_")
+            || targetName.contains("_fort") || targetName.equals("npc_dota_roshan"));
+    }
+}
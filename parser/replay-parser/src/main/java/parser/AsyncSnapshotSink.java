@@ -0,0 +1,140 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Moves the writing of another sink onto a dedicated writer thread, so the
+ * Clarity tick thread only copies the MatchState and never waits on
+ * serialization or disk I/O.
+ *
+ * Snapshots go through a bounded ring of preallocated MatchState slots:
+ * write() copies the state into the next free slot, and the writer thread
+ * takes every filled slot at once and writes them to the delegate in order.
+ * write() only blocks while the ring is full, i.e. when the output can't
+ * keep up. A failure of the delegate is rethrown by the next write() or by
+ * close().
+ */
+public class AsyncSnapshotSink implements SnapshotSink {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final SnapshotSink delegate;
+    private final MatchState[] slots;
+    private final float[] matchTimes;
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    // slots [head, tail) are filled and not written yet
+    private long head = 0;
+    private long tail = 0;
+    private boolean closed = false;
+    private Throwable failure = null;
+
+    public AsyncSnapshotSink(SnapshotSink delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.delegate = delegate;
+        slots = new MatchState[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new MatchState();
+        }
+        matchTimes = new float[capacity];
+        writer = new Thread(this::drain, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        long slot;
+        synchronized (lock) {
+            while (tail - head == slots.length && failure == null) {
+                await();
+            }
+            rethrowFailure();
+            slot = tail;
+        }
+        // the writer doesn't touch this slot until tail moves past it
+        int i = (int) (slot % slots.length);
+        slots[i].copyFrom(state);
+        matchTimes[i] = matchTime;
+        synchronized (lock) {
+            tail = slot + 1;
+            lock.notifyAll();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                long from;
+                long to;
+                synchronized (lock) {
+                    while (head == tail && !closed) {
+                        lock.wait();
+                    }
+                    if (head == tail) {
+                        return;
+                    }
+                    from = head;
+                    to = tail;
+                }
+                for (long k = from; k < to; k++) {
+                    int i = (int) (k % slots.length);
+                    delegate.write(matchTimes[i], slots[i]);
+                }
+                synchronized (lock) {
+                    head = to;
+                    lock.notifyAll();
+                }
+            }
+        } catch (Throwable t) {
+            synchronized (lock) {
+                failure = t;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the snapshot writer");
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw new IOException("Snapshot writer failed", failure);
+        }
+    }
+
+    /**
+     * Waits for every snapshot to be written, then closes the delegate.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the snapshot writer");
+        } finally {
+            delegate.close();
+        }
+        synchronized (lock) {
+            rethrowFailure();
+        }
+    }
+}
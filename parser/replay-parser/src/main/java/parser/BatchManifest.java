@@ -0,0 +1,278 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On-disk record of a batch run, one JSON line per finished replay:
+ *
+ *   {"replay":"replays/1.dem","output":"out/1.json","status":"DONE",
+ *    "sha256":"...","size":123,"modified":1700000000000,
+ *    "parser":"version=1.0.0 code=3f9a01c2d4e5 format=JSON intervalTicks=900 activeIntervalTicks=0"}
+ *
+ * Lines are appended and flushed as replays finish, so a crash loses at most
+ * the line being written; a torn last line is ignored on load. The newest
+ * line of a replay wins, and loading compacts the file through a temp file
+ * and an atomic rename.
+ *
+ * A replay is up to date when its last status is DONE, its content hash and
+ * the parser signature (version, a hash of the parser's classes and the
+ * output-affecting options) still match and its output exists. The hash is
+ * only recomputed when the replay's size or modification time changed.
+ */
+public class BatchManifest {
+
+    public static final String FILE_NAME = "batch-manifest.jsonl";
+
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    public static class Entry {
+        public String replay;
+        public String output;
+        public String status;
+        public String sha256;
+        public long size;
+        public long modified;
+        public String parser;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final File file;
+    private final String parserSignature;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private BufferedWriter writer;
+
+    public BatchManifest(File file, String parserSignature) throws IOException {
+        this.file = file;
+        this.parserSignature = parserSignature;
+        load();
+        compact();
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                try {
+                    Entry e = MAPPER.readValue(line, Entry.class);
+                    entries.put(e.replay, e);
+                } catch (IOException e) {
+                    System.err.println("Ignoring unreadable manifest line in " + file + ": " + line);
+                }
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            for (Entry e : entries.values()) {
+                out.write(MAPPER.writeValueAsString(e));
+                out.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns null if the replay is up to date, otherwise the fresh entry to
+     * complete and record once the replay has been parsed.
+     */
+    public Entry check(BatchParser.Job job) throws IOException {
+        File replay = new File(job.replayPath);
+        Entry e = new Entry();
+        e.replay = job.replayPath;
+        e.output = job.outputPath;
+        e.size = replay.length();
+        e.modified = replay.lastModified();
+        e.parser = parserSignature;
+
+        Entry last;
+        synchronized (entries) {
+            last = entries.get(job.replayPath);
+        }
+        if (last != null && last.size == e.size && last.modified == e.modified && last.sha256 != null) {
+            e.sha256 = last.sha256;
+        } else {
+            e.sha256 = sha256(replay);
+        }
+
+        boolean upToDate = last != null
+            && DONE.equals(last.status)
+            && e.sha256.equals(last.sha256)
+            && parserSignature.equals(last.parser)
+            && job.outputPath.equals(last.output)
+            && new File(job.outputPath).exists();
+        return upToDate ? null : e;
+    }
+
+    public void record(Entry e, String status) throws IOException {
+        e.status = status;
+        String line = MAPPER.writeValueAsString(e);
+        synchronized (entries) {
+            entries.put(e.replay, e);
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (entries) {
+            writer.close();
+        }
+    }
+
+    private static String codeHash;
+
+    /**
+     * First 12 hex digits of classesHash over the jar or classes directory
+     * the parser was loaded from. The jar's Implementation-Version stays the
+     * same across changes to the extraction code, this doesn't. If the
+     * classes can't be read, a random value, so that nothing written by
+     * another run is taken as current.
+     */
+    static synchronized String codeHash() {
+        if (codeHash == null) {
+            try {
+                Path location = Paths.get(ReplayParser.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                codeHash = classesHash(location, ReplayParser.class.getPackage().getName().replace('.', '/') + "/").substring(0, 12);
+            } catch (Exception e) {
+                System.err.println("Can't hash the parser classes, outputs of earlier runs won't be reused: " + e);
+                codeHash = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+            }
+        }
+        return codeHash;
+    }
+
+    /**
+     * SHA-256 over the names and contents of the class files under prefix
+     * of a classes directory or jar, in name order.
+     */
+    static String classesHash(Path location, String prefix) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (Files.isDirectory(location)) {
+            List<String> names = new ArrayList<>();
+            try (Stream<Path> files = Files.walk(location.resolve(prefix))) {
+                files.filter(f -> f.toString().endsWith(".class"))
+                    .forEach(f -> names.add(location.relativize(f).toString().replace(File.separatorChar, '/')));
+            }
+            Collections.sort(names);
+            for (String name : names) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(location.resolve(name)));
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                List<JarEntry> classes = new ArrayList<>();
+                for (JarEntry e : Collections.list(jar.entries())) {
+                    if (e.getName().startsWith(prefix) && e.getName().endsWith(".class")) {
+                        classes.add(e);
+                    }
+                }
+                classes.sort((a, b) -> a.getName().compareTo(b.getName()));
+                for (JarEntry e : classes) {
+                    digest.update(e.getName().getBytes(StandardCharsets.UTF_8));
+                    try (InputStream in = jar.getInputStream(e)) {
+                        digest.update(in.readAllBytes());
+                    }
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Parser version and code hash plus every option that changes the
+     * output, so outputs written by an older parser or with other settings
+     * are redone.
+     */
+    public static String signature(ParserOptions options) {
+        Map<String, Object> sig = new LinkedHashMap<>();
+        sig.put("version", ReplayParser.VERSION);
+        sig.put("code", codeHash());
+        sig.put("format", options.format.name());
+        sig.put("intervalTicks", options.samplingIntervalTicks());
+        sig.put("activeIntervalTicks", options.activeIntervalTicks);
+        sig.put("ticks", options.sampleTicks != null ? options.sampleTicks.length + ":" + Arrays.hashCode(options.sampleTicks) : null);
+        sig.put("window", options.hasWindow() ? options.windowFrom + "-" + options.windowTo : null);
+        sig.put("keyframeInterval", options.format == OutputFormat.DELTA ? options.keyframeInterval : null);
+        sig.put("profile", options.profile != ExtractionProfile.FULL ? options.profile.signature() : null);
+        sig.put("mapFeatures", options.mapFeatures ? true : null);
+        sig.put("recentStats", options.recentStats ? true : null);
+        sig.put("vocab", options.format == OutputFormat.TENSORS || options.model != null ? options.vocabulary.signature() : null);
+        sig.put("model", options.model != null ? options.model.signature() : null);
+        StringBuilder s = new StringBuilder();
+        for (Map.Entry<String, Object> e : sig.entrySet()) {
+            if (e.getValue() == null) continue;
+            if (s.length() > 0) s.append(' ');
+            s.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return s.toString();
+    }
+}
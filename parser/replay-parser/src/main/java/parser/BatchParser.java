@@ -0,0 +1,321 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Parses many replays inside one JVM so that Clarity class loading and JIT
+ * warm-up are paid once per batch instead of once per replay. Every replay
+ * gets its own ReplayParser and SimpleRunner, so replays run independently
+ * on a work-stealing pool and a failing replay only fails itself.
+ *
+ * Finished replays are recorded in <output-dir>/batch-manifest.jsonl, and a
+ * re-run skips the ones whose replay, parser and options haven't changed
+ * (see BatchManifest); --no-resume parses everything again.
+ *
+ * Binary and columnar outputs share the name codes of
+ * <output-dir>/names.json (see NameDictionary) unless --names says otherwise.
+ *
+ * With --memory-budget, replays only start while their estimated memory
+ * fits into the budget (see MemoryBudget), whatever --threads allows.
+ *
+ * With --cache DIR, replays whose content was parsed before with the same
+ * options, under any name, are copied from the cache (see ReplayCache).
+ *
+ * Every run also writes <output-dir>/batch-summary.json with the phase
+ * timings and counters of each parsed replay (see ParseMetrics) and their
+ * totals.
+ */
+public class BatchParser {
+
+    public static final String SUMMARY_FILE_NAME = "batch-summary.json";
+
+    public static class Job {
+        public final String replayPath;
+        public final String outputPath;
+
+        public Job(String replayPath, String outputPath) {
+            this.replayPath = replayPath;
+            this.outputPath = outputPath;
+        }
+    }
+
+    private final List<Job> jobs;
+    private final ParserOptions options;
+    private final BatchManifest manifest;
+    private final MemoryBudget memory;
+
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong totalTicks = new AtomicLong();
+    private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+    private final List<Result> results = Collections.synchronizedList(new ArrayList<>());
+    private long wallNanos;
+
+    /**
+     * One replay in the batch summary; metrics are partial for a failed
+     * replay.
+     */
+    public static class Result {
+        public String replay;
+        public String status;
+        public ParseMetrics metrics;
+    }
+
+    /**
+     * Root of batch-summary.json.
+     */
+    public static class Summary {
+        public int parsed;
+        public int upToDate;
+        public int failed;
+        public int threads;
+        public long wallNanos;
+        public ParseMetrics totals = new ParseMetrics();
+        public List<Result> replays = new ArrayList<>();
+    }
+
+    public BatchParser(List<Job> jobs, ParserOptions options) {
+        this(jobs, options, null);
+    }
+
+    /**
+     * @param manifest records finished replays and skips the ones that are
+     *                 already up to date; null parses every job
+     */
+    public BatchParser(List<Job> jobs, ParserOptions options, BatchManifest manifest) {
+        this.jobs = jobs;
+        this.options = options;
+        this.manifest = manifest;
+        this.memory = options.memoryBudget > 0 ? new MemoryBudget(options.memoryBudget) : null;
+    }
+
+    public void run() {
+        long tStart = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                tasks.add(pool.submit(() -> parseOne(job)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        wallNanos = System.nanoTime() - tStart;
+        double seconds = wallNanos / 1e9;
+        ParseMetrics totals = getSummary().totals;
+        System.out.println(String.format(
+            "Batch finished: %d parsed (%d from cache), %d up to date, %d failed in %.1f s on %d threads (%.2f replays/s, %.0f ticks/s)",
+            parsed.get(), totals.cacheHits, skipped.get(), failed.size(), seconds, options.threads, parsed.get() / seconds, totalTicks.get() / seconds));
+        System.out.println(totals);
+        synchronized (failed) {
+            for (String replay : failed) {
+                System.out.println("FAILED " + replay);
+            }
+        }
+    }
+
+    private void parseOne(Job job) {
+        BatchManifest.Entry entry = null;
+        if (manifest != null) {
+            try {
+                entry = manifest.check(job);
+            } catch (IOException e) {
+                System.err.println("Failed to read replay " + job.replayPath + ": " + e);
+                failed.add(job.replayPath);
+                return;
+            }
+            if (entry == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+        }
+
+        ReplayParser parser = new ReplayParser(job.replayPath, job.outputPath, options);
+        boolean cached;
+        try {
+            cached = parser.isCached();
+        } catch (IOException e) {
+            // parse() runs into it again and reports it
+            cached = false;
+        }
+
+        // a copy from the cache needs no memory to speak of
+        long reserved = 0;
+        if (!cached) {
+            long estimate = MemoryBudget.estimate(job.replayPath, options);
+            if (options.replayMemory > 0 && estimate > options.replayMemory) {
+                System.err.println(String.format("%s needs an estimated %d MB, more than --replay-memory",
+                    job.replayPath, estimate / MemoryBudget.MB));
+            }
+            if (memory != null) {
+                try {
+                    reserved = memory.acquire(estimate);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.add(job.replayPath);
+                    return;
+                }
+            }
+        }
+
+        String status = BatchManifest.DONE;
+        try {
+            parser.parse();
+            parsed.incrementAndGet();
+        } catch (Exception | StackOverflowError e) {
+            System.err.println("Failed to parse replay " + job.replayPath + ": " + e);
+            failed.add(job.replayPath);
+            status = BatchManifest.FAILED;
+        } finally {
+            if (memory != null) {
+                memory.release(reserved);
+            }
+        }
+        totalTicks.addAndGet(parser.getTicksProcessed());
+
+        // before the manifest, so a replay recorded as done never uses codes that weren't saved
+        try {
+            options.saveNames();
+        } catch (IOException e) {
+            System.err.println("Failed to save name dictionary " + options.namesFile + ": " + e);
+        }
+
+        Result result = new Result();
+        result.replay = job.replayPath;
+        result.status = status;
+        result.metrics = parser.getMetrics();
+        results.add(result);
+
+        if (entry != null) {
+            try {
+                manifest.record(entry, status);
+            } catch (IOException e) {
+                System.err.println("Failed to update batch manifest for " + job.replayPath + ": " + e);
+            }
+        }
+    }
+
+    public List<String> getFailed() {
+        return failed;
+    }
+
+    public Summary getSummary() {
+        Summary summary = new Summary();
+        summary.parsed = parsed.get();
+        summary.upToDate = skipped.get();
+        summary.failed = failed.size();
+        summary.threads = options.threads;
+        summary.wallNanos = wallNanos;
+        synchronized (results) {
+            summary.replays.addAll(results);
+        }
+        summary.replays.sort((a, b) -> a.replay.compareTo(b.replay));
+        for (Result r : summary.replays) {
+            summary.totals.add(r.metrics);
+        }
+        return summary;
+    }
+
+    public void writeSummary(File file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, getSummary());
+    }
+
+    /**
+     * Builds the job list from a directory of replays (.dem, .dem.bz2 or
+     * .dem.zst), a manifest file or "-" for a manifest on stdin. Manifest
+     * lines are "<replay> [output]"; without an explicit output the match is
+     * written to
+     * {@code <outputDir>/<replay name><format extension>}.
+     */
+    public static List<Job> loadJobs(String source, String outputDir, OutputFormat format) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        File src = new File(source);
+
+        if (src.isDirectory()) {
+            File[] replays = src.listFiles((dir, name) -> ReplaySources.isReplay(name));
+            if (replays == null) {
+                throw new IOException("Can't list replay directory " + source);
+            }
+            Arrays.sort(replays);
+            for (File replay : replays) {
+                jobs.add(new Job(replay.getPath(), defaultOutputPath(replay.getName(), outputDir, format)));
+            }
+            return jobs;
+        }
+
+        BufferedReader reader = source.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+            : Files.newBufferedReader(src.toPath(), StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+", 2);
+                String output = parts.length > 1
+                    ? parts[1]
+                    : defaultOutputPath(new File(parts[0]).getName(), outputDir, format);
+                jobs.add(new Job(parts[0], output));
+            }
+        } finally {
+            reader.close();
+        }
+        return jobs;
+    }
+
+    private static String defaultOutputPath(String replayName, String outputDir, OutputFormat format) {
+        return new File(outputDir, ReplaySources.stem(replayName) + format.extension).getPath();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java -cp replay-parser-1.0.0.jar parser.BatchParser <manifest.txt|replay-dir|-> <output-dir> [sampling] [--format json|ndjson|binary|columnar|delta|tensors [--keyframe-interval K] [--vocab DIR]] [--write-buffer N] [--profile full|model|FILE] [--map-features] [--recent-stats] [--model FILE.onnx --vocab DIR [--inference-batch N] [--inference-threads N]] [--names FILE] [--replay-memory SIZE] [--cache DIR [--cache-size SIZE]] [--threads N] [--memory-budget SIZE] [--no-resume]");
+            System.err.println(ReplayParser.SAMPLING_USAGE);
+            return;
+        }
+        ParserOptions options = ParserOptions.fromArgs(args, 2);
+
+        new File(args[1]).mkdirs();
+        if (options.names == null && options.format.usesNameDictionary()) {
+            options.loadNames(new File(args[1], NameDictionary.FILE_NAME));
+        }
+        List<Job> jobs = loadJobs(args[0], args[1], options.format);
+        System.out.println("Loaded " + jobs.size() + " replays");
+
+        BatchManifest manifest = options.resume
+            ? new BatchManifest(new File(args[1], BatchManifest.FILE_NAME), BatchManifest.signature(options))
+            : null;
+        BatchParser batch = new BatchParser(jobs, options, manifest);
+        try {
+            batch.run();
+            batch.writeSummary(new File(args[1], SUMMARY_FILE_NAME));
+        } finally {
+            if (manifest != null) manifest.close();
+        }
+        if (!batch.getFailed().isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
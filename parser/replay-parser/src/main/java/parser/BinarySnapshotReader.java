@@ -0,0 +1,161 @@
+package parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records of a file written by BinarySnapshotSink, one at a time
+ * into a reused MatchState.
+ */
+public class BinarySnapshotReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    // by NameDictionary code, as defined along the file
+    private String[] names = new String[256];
+    private float matchTime;
+
+    public BinarySnapshotReader(String path) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+    }
+
+    public BinarySnapshotReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] magic = new byte[BinarySnapshotSink.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, BinarySnapshotSink.MAGIC)) {
+            throw new IOException("Not a binary snapshot file");
+        }
+        int version = this.in.readInt();
+        if (version != BinarySnapshotSink.VERSION) {
+            throw new IOException("Unsupported binary snapshot version " + version);
+        }
+        int[] expected = {MatchState.PLAYERS, MatchState.INT_FIELDS, MatchState.FLOAT_FIELDS,
+            MatchState.INVENTORY_SLOTS, MatchState.TEAMS, MatchState.TEAM_FIELDS, MatchState.BUILDING_SLOTS, MatchState.MAP_FEATURES,
+            MatchState.RECENT_PLAYER_KEYS.length, MatchState.RECENT_TEAM_KEYS.length};
+        for (int dimension : expected) {
+            if (this.in.readInt() != dimension) {
+                throw new IOException("Binary snapshot file was written with another MatchState layout");
+            }
+        }
+    }
+
+    /**
+     * Reads the next snapshot into s; false at the end of the file.
+     */
+    public boolean next(MatchState s) throws IOException {
+        try {
+            in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        matchTime = in.readFloat();
+        s.tick = in.readInt();
+
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            s.present[p] = in.readLong();
+            for (int f = 0; f < MatchState.INT_FIELDS; f++) {
+                s.ints[p * MatchState.INT_FIELDS + f] = in.readInt();
+            }
+            for (int f = 0; f < MatchState.FLOAT_FIELDS; f++) {
+                s.floats[p * MatchState.FLOAT_FIELDS + f] = in.readFloat();
+            }
+            s.steamIds[p] = in.readLong();
+            s.names[p] = readString();
+            s.units[p] = readName();
+            for (int i = p * MatchState.INVENTORY_SLOTS; i < (p + 1) * MatchState.INVENTORY_SLOTS; i++) {
+                s.itemIds[i] = readName();
+                s.itemCharges[i] = in.readInt();
+                s.itemSecondaryCharges[i] = in.readInt();
+            }
+        }
+
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            s.rosterSize[t] = in.readUnsignedByte();
+            for (int i = 0; i < s.rosterSize[t]; i++) {
+                s.roster[t][i] = in.readUnsignedByte();
+            }
+        }
+        for (int i = 0; i < s.teamTotals.length; i++) {
+            s.teamTotals[i] = in.readInt();
+        }
+        for (int b = 0; b < s.buildingNames.length; b++) {
+            s.buildingNames[b] = readName();
+            s.buildingHealth[b] = in.readInt();
+        }
+        s.clearWards();
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            int wards = in.readUnsignedShort();
+            for (int i = 0; i < wards; i++) {
+                s.addWard(t, in.readFloat(), in.readFloat());
+            }
+        }
+        s.hasMapFeatures = in.readBoolean();
+        if (s.hasMapFeatures) {
+            for (int i = 0; i < s.mapFeatures.length; i++) {
+                s.mapFeatures[i] = in.readFloat();
+            }
+        }
+        s.hasRecent = in.readBoolean();
+        if (s.hasRecent) {
+            for (int i = 0; i < s.recentPlayer.length; i++) {
+                s.recentPlayer[i] = in.readInt();
+            }
+            for (int i = 0; i < s.recentTeam.length; i++) {
+                s.recentTeam[i] = in.readInt();
+            }
+        }
+        s.hasWinProbability = in.readBoolean();
+        s.radiantWinProbability = s.hasWinProbability ? in.readFloat() : Float.NaN;
+        return true;
+    }
+
+    /**
+     * matchTime of the snapshot last read by next().
+     */
+    public float matchTime() {
+        return matchTime;
+    }
+
+    private String readString() throws IOException {
+        int code = in.readInt();
+        if (code < 0) {
+            return null;
+        }
+        if (code == strings.size()) {
+            strings.add(in.readUTF());
+        }
+        return strings.get(code);
+    }
+
+    private String readName() throws IOException {
+        int code = in.readInt();
+        if (code == -1) {
+            return null;
+        }
+        if (code < -1) {
+            code = -2 - code;
+            if (code >= names.length) {
+                names = Arrays.copyOf(names, Math.max(code + 1, names.length * 2));
+            }
+            names[code] = in.readUTF();
+        }
+        if (code >= names.length || names[code] == null) {
+            throw new IOException("Name code " + code + " used before its definition");
+        }
+        return names[code];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,203 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes snapshots as length-prefixed binary records, the compact and
+ * cheap-to-write counterpart of the JSON formats. Big-endian throughout:
+ *
+ *   header  "DOTASNAP", int VERSION, then the MatchState dimensions
+ *           PLAYERS, INT_FIELDS, FLOAT_FIELDS, INVENTORY_SLOTS, TEAMS,
+ *           TEAM_FIELDS, BUILDING_SLOTS, MAP_FEATURES and the number of
+ *           RECENT_PLAYER_KEYS and RECENT_TEAM_KEYS as ints
+ *   record  int length of the rest of the record, float matchTime, int tick,
+ *           per player: long presence bits, the int and float fields,
+ *             long steamId, string name, name unit,
+ *             per inventory slot: name item, int charges, int secondary charges
+ *           per team: byte roster size, the roster's player indices as bytes
+ *           the team totals as ints
+ *           per building slot: name building, int health
+ *           per team: short ward count, float x and y per ward
+ *           byte 1 if the map features follow, then per team the
+ *             MAP_FEATURES floats
+ *           byte 1 if the recent stats follow, then recentPlayer and
+ *             recentTeam as ints
+ *           byte 1 if a win probability follows, then float
+ *             radiantWinProbability (NaN before the model's first window)
+ *
+ * Strings (player names) are int codes into a table built up along the
+ * file: -1 is null, a code seen for the first time is followed by the string
+ * in modified UTF-8, later uses are the code alone. Names (units, items,
+ * buildings) are int codes of a NameDictionary, the batch-wide one when
+ * there is one: -1 is null, the first use of code c in the file is written
+ * as -2 - c followed by the name, so a file reads without the dictionary.
+ * BinarySnapshotReader reads it back.
+ */
+public class BinarySnapshotSink implements SnapshotSink {
+
+    static final byte[] MAGIC = "DOTASNAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 5;
+
+    private final DataOutputStream out;
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream data = new DataOutputStream(record);
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final NameDictionary names;
+    // cache of names' codes, and the codes already written out with their name
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final BitSet definedNames = new BitSet();
+
+    public BinarySnapshotSink(String outputPath) throws IOException {
+        this(outputPath, null);
+    }
+
+    /**
+     * @param names dictionary shared with other replays; null for one of this file only
+     */
+    public BinarySnapshotSink(String outputPath, NameDictionary names) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 16), names);
+    }
+
+    public BinarySnapshotSink(OutputStream out) throws IOException {
+        this(out, null);
+    }
+
+    public BinarySnapshotSink(OutputStream out, NameDictionary names) throws IOException {
+        this.names = names != null ? names : new NameDictionary();
+        this.out = new DataOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+        for (int dimension : new int[] {MatchState.PLAYERS, MatchState.INT_FIELDS, MatchState.FLOAT_FIELDS,
+                MatchState.INVENTORY_SLOTS, MatchState.TEAMS, MatchState.TEAM_FIELDS, MatchState.BUILDING_SLOTS, MatchState.MAP_FEATURES,
+                MatchState.RECENT_PLAYER_KEYS.length, MatchState.RECENT_TEAM_KEYS.length}) {
+            this.out.writeInt(dimension);
+        }
+    }
+
+    @Override
+    public void write(float matchTime, MatchState s) throws IOException {
+        record.reset();
+        data.writeFloat(matchTime);
+        data.writeInt(s.tick);
+
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            data.writeLong(s.present[p]);
+            for (int f = 0; f < MatchState.INT_FIELDS; f++) {
+                data.writeInt(s.ints[p * MatchState.INT_FIELDS + f]);
+            }
+            for (int f = 0; f < MatchState.FLOAT_FIELDS; f++) {
+                data.writeFloat(s.floats[p * MatchState.FLOAT_FIELDS + f]);
+            }
+            data.writeLong(s.steamIds[p]);
+            writeString(s.names[p]);
+            writeName(s.units[p]);
+            for (int i = p * MatchState.INVENTORY_SLOTS; i < (p + 1) * MatchState.INVENTORY_SLOTS; i++) {
+                writeName(s.itemIds[i]);
+                data.writeInt(s.itemCharges[i]);
+                data.writeInt(s.itemSecondaryCharges[i]);
+            }
+        }
+
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            data.writeByte(s.rosterSize[t]);
+            for (int i = 0; i < s.rosterSize[t]; i++) {
+                data.writeByte(s.roster[t][i]);
+            }
+        }
+        for (int total : s.teamTotals) {
+            data.writeInt(total);
+        }
+        for (int b = 0; b < s.buildingNames.length; b++) {
+            writeName(s.buildingNames[b]);
+            data.writeInt(s.buildingHealth[b]);
+        }
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            data.writeShort(s.wardCount[t]);
+            for (int i = 0; i < s.wardCount[t]; i++) {
+                data.writeFloat(s.wardX[t][i]);
+                data.writeFloat(s.wardY[t][i]);
+            }
+        }
+        data.writeBoolean(s.hasMapFeatures);
+        if (s.hasMapFeatures) {
+            for (float feature : s.mapFeatures) {
+                data.writeFloat(feature);
+            }
+        }
+        data.writeBoolean(s.hasRecent);
+        if (s.hasRecent) {
+            for (int value : s.recentPlayer) {
+                data.writeInt(value);
+            }
+            for (int value : s.recentTeam) {
+                data.writeInt(value);
+            }
+        }
+        data.writeBoolean(s.hasWinProbability);
+        if (s.hasWinProbability) {
+            data.writeFloat(s.radiantWinProbability);
+        }
+
+        out.writeInt(record.size());
+        out.write(record.buffer(), 0, record.size());
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            data.writeInt(code);
+            return;
+        }
+        code = codes.size();
+        codes.put(value, code);
+        data.writeInt(code);
+        data.writeUTF(value);
+    }
+
+    private void writeName(String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        Integer code = nameCodes.get(value);
+        if (code == null) {
+            code = names.code(value);
+            nameCodes.put(value, code);
+        }
+        if (definedNames.get(code)) {
+            data.writeInt(code);
+            return;
+        }
+        definedNames.set(code);
+        data.writeInt(-2 - code);
+        data.writeUTF(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(8192);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package parser;
+
+import java.util.Arrays;
+
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.model.FieldPath;
+import skadistats.clarity.model.StringTable;
+import skadistats.clarity.processor.entities.OnEntityCreated;
+import skadistats.clarity.processor.entities.OnEntityDeleted;
+import skadistats.clarity.processor.entities.OnEntityUpdated;
+import skadistats.clarity.processor.runner.Context;
+import skadistats.clarity.processor.stringtables.StringTables;
+import skadistats.clarity.processor.stringtables.UsesStringTable;
+
+/**
+ * Keeps tower, barracks and ancient state up to date from entity events.
+ *
+ * A building is classified into its slot (see SnapshotWriter.BUILDING_KEYS)
+ * once, when its entity is created. Updates only refresh its health and a
+ * deleted building stays in its slot with 0 health, so the MatchState's
+ * building arrays are always current and a snapshot has nothing left to scan.
+ */
+public class BuildingTracker {
+
+    static final String BUILDING_CLASSES = "CDOTA_BaseNPC_.*(Tower|Barracks|Fort).*";
+    static final int SLOTS = MatchState.BUILDING_SLOTS;
+
+    private static final int MAX_ENTITIES = 1 << 14;
+    private static final int UNTRACKED = -1;
+    private static final int IGNORED = -2;
+
+    private final MatchState state;
+    // entity index -> team * SLOTS + slot, UNTRACKED, or IGNORED for entities
+    // that were resolved but aren't one of our buildings (e.g. outposts)
+    private final int[] slotByEntity = new int[MAX_ENTITIES];
+    private final FieldPathCache fieldPaths;
+
+    public BuildingTracker(MatchState state, FieldPathCache fieldPaths) {
+        this.state = state;
+        this.fieldPaths = fieldPaths;
+        Arrays.fill(slotByEntity, UNTRACKED);
+    }
+
+    @UsesStringTable("EntityNames")
+    @OnEntityCreated(classPattern = BUILDING_CLASSES)
+    public void onCreated(Context ctx, Entity e) {
+        track(ctx, e);
+    }
+
+    @OnEntityUpdated(classPattern = BUILDING_CLASSES)
+    public void onUpdated(Context ctx, Entity e, FieldPath[] updatedPaths, int updateCount) {
+        int packed = slotByEntity[e.getIndex()];
+        if (packed == UNTRACKED) {
+            // the name may not have been resolvable when the entity was created
+            track(ctx, e);
+            return;
+        }
+        if (packed == IGNORED) return;
+        Integer hp = fieldPaths.get(e, "m_iHealth");
+        if (hp != null) {
+            state.buildingHealth[packed] = hp;
+        }
+    }
+
+    @OnEntityDeleted(classPattern = BUILDING_CLASSES)
+    public void onDeleted(Context ctx, Entity e) {
+        int packed = slotByEntity[e.getIndex()];
+        slotByEntity[e.getIndex()] = UNTRACKED;
+        if (packed < 0) return;
+        state.buildingHealth[packed] = 0;
+    }
+
+    private void track(Context ctx, Entity e) {
+        Integer hp = fieldPaths.get(e, "m_iHealth");
+        Integer team = fieldPaths.get(e, "m_iTeamNum");
+        Integer nameIdx = fieldPaths.get(e, "m_pEntity.m_nameStringableIndex");
+
+        if (hp == null || team == null || nameIdx == null) return;
+
+        String name = entityName(ctx, nameIdx);
+        if (name == null) return;
+
+        int t = team - 2;
+        int slot = (team == 2 || team == 3) ? classify(name, state.buildingNames[t * SLOTS + slotOf("tier4a")] != null) : -1;
+        if (slot == -1) {
+            slotByEntity[e.getIndex()] = IGNORED;
+            return;
+        }
+
+        int packed = t * SLOTS + slot;
+        state.buildingNames[packed] = name;
+        state.buildingHealth[packed] = hp;
+        slotByEntity[e.getIndex()] = packed;
+
+        // buildings never move, so their position is read once
+        Integer cx = fieldPaths.get(e, "CBodyComponent.m_cellX");
+        Integer cy = fieldPaths.get(e, "CBodyComponent.m_cellY");
+        Float vx = fieldPaths.get(e, "CBodyComponent.m_vecX");
+        Float vy = fieldPaths.get(e, "CBodyComponent.m_vecY");
+        if (cx != null && cy != null && vx != null && vy != null) {
+            state.buildingX[packed] = (cx * 128.0f + vx) / 128;
+            state.buildingY[packed] = (cy * 128.0f + vy) / 128;
+        }
+    }
+
+    /**
+     * Entry nameIdx of the EntityNames table. Package-private so the
+     * benchmarks can name buildings without a runner.
+     */
+    String entityName(Context ctx, int nameIdx) {
+        StringTable entityNames = ctx.getProcessor(StringTables.class).forName("EntityNames");
+        return entityNames != null ? entityNames.getNameByIndex(nameIdx) : null;
+    }
+
+    static int classify(String name, boolean tier4aTaken) {
+        if (name.contains("tower1_top")) return slotOf("topTier1");
+        else if (name.contains("tower2_top")) return slotOf("topTier2");
+        else if (name.contains("tower3_top")) return slotOf("topTier3");
+
+        else if (name.contains("tower1_mid")) return slotOf("midTier1");
+        else if (name.contains("tower2_mid")) return slotOf("midTier2");
+        else if (name.contains("tower3_mid")) return slotOf("midTier3");
+
+        else if (name.contains("tower1_bot")) return slotOf("botTier1");
+        else if (name.contains("tower2_bot")) return slotOf("botTier2");
+        else if (name.contains("tower3_bot")) return slotOf("botTier3");
+
+        else if (name.contains("tower4")) {
+            if (name.contains("top")) return slotOf("tier4a");
+            else if (name.contains("bot")) return slotOf("tier4b");
+            else return tier4aTaken ? slotOf("tier4b") : slotOf("tier4a");
+        }
+
+        else if (name.contains("rax_melee_top")) return slotOf("topRaxMelee");
+        else if (name.contains("rax_range_top")) return slotOf("topRaxRanged");
+
+        else if (name.contains("rax_melee_mid")) return slotOf("midRaxMelee");
+        else if (name.contains("rax_range_mid")) return slotOf("midRaxRanged");
+
+        else if (name.contains("rax_melee_bot")) return slotOf("botRaxMelee");
+        else if (name.contains("rax_range_bot")) return slotOf("botRaxRanged");
+
+        else if (name.contains("fort")) return slotOf("ancient");
+        return -1;
+    }
+
+    static int slotOf(String key) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (SnapshotWriter.BUILDING_KEYS[i].equals(key)) return i;
+        }
+        throw new IllegalArgumentException("Unknown building key " + key);
+    }
+}
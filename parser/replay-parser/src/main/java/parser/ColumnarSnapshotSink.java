@@ -0,0 +1,339 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a replay as a directory of typed columns, one .npy file per column:
+ *
+ *   players/    one row per (tick, player)
+ *   teams/      one row per (tick, team) with the team totals and, with
+ *               --map-features, the MapIndex features as float columns
+ *   buildings/  one row per (tick, building)
+ *   wards/      one row per (tick, observer ward)
+ *   dictionary.json
+ *
+ * With --recent-stats the players and teams tables also get an int column
+ * per MatchState.RECENT_PLAYER_KEYS / RECENT_TEAM_KEYS entry, e.g. goldEarned60.
+ * With --model the teams table gets the float column winProbability, the
+ * model's probability that the row's team wins.
+ *
+ * Strings (player names, hero units, item and building names) are dictionary
+ * encoded into int32 codes that index dictionary.json's "strings"; -1 means
+ * no value. Unit, item and building names use the codes of a NameDictionary,
+ * the batch-wide one when there is one, so they are the same in every replay
+ * of a batch; "strings" starts with that dictionary's names and ends with
+ * the player names of this replay. Missing numbers are stored as MISSING_INT / MISSING_LONG / NaN.
+ * Every row has the server tick of its snapshot and its whole-second
+ * matchTime, so sub-second samples are told apart by tick.
+ */
+public class ColumnarSnapshotSink implements SnapshotSink {
+
+    public static final int MISSING_INT = Integer.MIN_VALUE;
+    public static final long MISSING_LONG = Long.MIN_VALUE;
+    static final int INVENTORY_SLOTS = MatchState.INVENTORY_SLOTS;
+
+    private final File outputDir;
+    private final NameDictionary names;
+    // cache of names' codes, and the player names with their local codes
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final Map<String, Integer> playerNameCodes = new HashMap<>();
+    private final List<String> playerNames = new ArrayList<>();
+
+    private final Table players = new Table("players");
+    private final Table teams = new Table("teams");
+    private final Table buildings = new Table("buildings");
+    private final Table wards = new Table("wards");
+
+    public ColumnarSnapshotSink(String outputPath) throws IOException {
+        this(outputPath, null);
+    }
+
+    /**
+     * @param names dictionary shared with other replays; null for one of this replay only
+     */
+    public ColumnarSnapshotSink(String outputPath, NameDictionary names) throws IOException {
+        this.names = names != null ? names : new NameDictionary();
+        outputDir = new File(outputPath);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Can't create output directory " + outputPath);
+        }
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        int seconds = (int) Math.floor(matchTime);
+        writeTeam(seconds, state, 0);
+        writeTeam(seconds, state, 1);
+    }
+
+    private void writeTeam(int matchTime, MatchState s, int team) {
+        int teamId = MatchState.teamId(team);
+        for (int i = 0; i < s.rosterSize[team]; i++) {
+            writePlayer(matchTime, s, s.roster[team][i]);
+        }
+
+        teams.ints("matchTime").add(matchTime);
+        teams.ints("tick").add(s.tick);
+        teams.ints("team").add(teamId);
+        teams.ints("totalCampsStacked").add(s.getTeamTotal(team, MatchState.CAMPS_STACKED));
+        teams.ints("totalRunePickups").add(s.getTeamTotal(team, MatchState.RUNE_PICKUPS));
+        teams.ints("totalTowersKilled").add(s.getTeamTotal(team, MatchState.TOWERS_KILLED));
+        teams.ints("totalRoshansKilled").add(s.getTeamTotal(team, MatchState.ROSHANS_KILLED));
+        teams.ints("totalSmokesUsed").add(s.getTeamTotal(team, MatchState.SMOKES_USED));
+        for (int f = 0; s.hasMapFeatures && f < MatchState.MAP_FEATURES; f++) {
+            teams.floats(MatchState.MAP_FEATURE_NAMES[f]).add(s.mapFeatures[team * MatchState.MAP_FEATURES + f]);
+        }
+        for (int k = 0; s.hasRecent && k < MatchState.RECENT_TEAM_KEYS.length; k++) {
+            teams.ints(MatchState.RECENT_TEAM_KEYS[k]).add(s.recentTeam[team * MatchState.RECENT_TEAM_KEYS.length + k]);
+        }
+        if (s.hasWinProbability) {
+            // of this row's team, NaN before the model's first full window
+            teams.floats("winProbability").add(team == 0 ? s.radiantWinProbability : 1 - s.radiantWinProbability);
+        }
+
+        for (int slot = 0; slot < MatchState.BUILDING_SLOTS; slot++) {
+            int b = team * MatchState.BUILDING_SLOTS + slot;
+            if (s.buildingNames[b] == null) continue;
+            buildings.ints("matchTime").add(matchTime);
+            buildings.ints("tick").add(s.tick);
+            buildings.ints("team").add(teamId);
+            buildings.ints("key").add(code(SnapshotWriter.BUILDING_KEYS[slot]));
+            buildings.ints("name").add(code(s.buildingNames[b]));
+            buildings.ints("health").add(s.buildingHealth[b]);
+        }
+
+        for (int i = 0; i < s.wardCount[team]; i++) {
+            wards.ints("matchTime").add(matchTime);
+            wards.ints("tick").add(s.tick);
+            wards.ints("team").add(teamId);
+            wards.floats("x").add(s.wardX[team][i]);
+            wards.floats("y").add(s.wardY[team][i]);
+        }
+    }
+
+    private void writePlayer(int matchTime, MatchState s, int p) {
+        players.ints("matchTime").add(matchTime);
+        players.ints("tick").add(s.tick);
+        players.ints("player").add(p);
+        players.ints("value").add(s, p, MatchState.VALUE);
+        players.ints("team").add(s, p, MatchState.TEAM);
+        players.ints("name").add(playerNameCode(s.names[p]));
+        players.longs("steamId").add(s.hasSteamId(p) ? s.steamIds[p] : MISSING_LONG);
+        players.ints("heroId").add(s, p, MatchState.HERO_ID);
+        players.ints("heroVariant").add(s, p, MatchState.HERO_VARIANT);
+        players.ints("level").add(s, p, MatchState.LEVEL);
+        players.ints("xp").add(s, p, MatchState.XP);
+        players.ints("networth").add(s, p, MatchState.NETWORTH);
+        players.ints("totalGold").add(s, p, MatchState.TOTAL_GOLD);
+        players.ints("currentGold").add(s, p, MatchState.CURRENT_GOLD);
+        players.ints("lifeState").add(s, p, MatchState.LIFE_STATE);
+        players.ints("respawnSeconds").add(s, p, MatchState.RESPAWN_SECONDS);
+        players.floats("buybackCooldown").add(s, p, MatchState.BUYBACK_COOLDOWN);
+        players.ints("heroDamage").add(s, p, MatchState.HERO_DAMAGE);
+        players.ints("towerDamage").add(s, p, MatchState.TOWER_DAMAGE);
+        players.ints("damageTakenPreReduction").add(s, p, MatchState.DAMAGE_TAKEN_PRE_REDUCTION);
+        players.ints("damageTakenPostReduction").add(s, p, MatchState.DAMAGE_TAKEN_POST_REDUCTION);
+        players.floats("healing").add(s, p, MatchState.HEALING);
+        players.ints("kills").add(s, p, MatchState.KILLS);
+        players.ints("deaths").add(s, p, MatchState.DEATHS);
+        players.ints("assists").add(s, p, MatchState.ASSISTS);
+        players.ints("lastHits").add(s, p, MatchState.LAST_HITS);
+        players.ints("denies").add(s, p, MatchState.DENIES);
+        players.floats("teamfightParticipation").add(s, p, MatchState.TEAMFIGHT_PARTICIPATION);
+        players.ints("obsPlaced").add(s, p, MatchState.OBS_PLACED);
+        players.ints("senPlaced").add(s, p, MatchState.SEN_PLACED);
+        players.floats("x").add(s, p, MatchState.X);
+        players.floats("y").add(s, p, MatchState.Y);
+        players.ints("unit").add(code(s.units[p]));
+
+        int base = p * MatchState.INVENTORY_SLOTS;
+        for (int slot = 0; slot < INVENTORY_SLOTS; slot++) {
+            players.ints(ITEM_COLUMNS[slot]).add(code(s.itemIds[base + slot]));
+            players.ints(CHARGES_COLUMNS[slot]).add(s.itemCharges[base + slot]);
+            players.ints(SECONDARY_CHARGES_COLUMNS[slot]).add(s.itemSecondaryCharges[base + slot]);
+        }
+        for (int k = 0; s.hasRecent && k < MatchState.RECENT_PLAYER_KEYS.length; k++) {
+            players.ints(MatchState.RECENT_PLAYER_KEYS[k]).add(s.recentPlayer[p * MatchState.RECENT_PLAYER_KEYS.length + k]);
+        }
+    }
+
+    private int code(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = nameCodes.get(value);
+        if (code == null) {
+            code = names.code(value);
+            nameCodes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Local code of a player name; close() moves these behind the dictionary's names.
+     */
+    private int playerNameCode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = playerNameCodes.get(value);
+        if (code == null) {
+            code = playerNames.size();
+            playerNameCodes.put(value, code);
+            playerNames.add(value);
+        }
+        return code;
+    }
+
+    @Override
+    public void close() throws IOException {
+        int shared = names.size();
+        players.ints("name").offset(shared);
+        List<String> strings = new ArrayList<>(names.names(shared));
+        strings.addAll(playerNames);
+
+        players.write(outputDir);
+        teams.write(outputDir);
+        buildings.write(outputDir);
+        wards.write(outputDir);
+
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("strings", strings);
+        meta.put("missingInt", MISSING_INT);
+        meta.put("missingLong", MISSING_LONG);
+        new ObjectMapper().writeValue(new File(outputDir, "dictionary.json"), meta);
+    }
+
+    private static final String[] ITEM_COLUMNS = slotColumns("item_");
+    private static final String[] CHARGES_COLUMNS = slotColumns("charges_");
+    private static final String[] SECONDARY_CHARGES_COLUMNS = slotColumns("secondaryCharges_");
+
+    private static String[] slotColumns(String prefix) {
+        String[] names = new String[INVENTORY_SLOTS];
+        for (int i = 0; i < INVENTORY_SLOTS; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+
+    private static class Table {
+        final String name;
+        final Map<String, Column> columns = new LinkedHashMap<>();
+
+        Table(String name) {
+            this.name = name;
+        }
+
+        IntColumn ints(String column) {
+            Column c = columns.get(column);
+            if (c == null) {
+                c = new IntColumn();
+                columns.put(column, c);
+            }
+            return (IntColumn) c;
+        }
+
+        FloatColumn floats(String column) {
+            Column c = columns.get(column);
+            if (c == null) {
+                c = new FloatColumn();
+                columns.put(column, c);
+            }
+            return (FloatColumn) c;
+        }
+
+        LongColumn longs(String column) {
+            Column c = columns.get(column);
+            if (c == null) {
+                c = new LongColumn();
+                columns.put(column, c);
+            }
+            return (LongColumn) c;
+        }
+
+        void write(File outputDir) throws IOException {
+            File dir = new File(outputDir, name);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Can't create table directory " + dir);
+            }
+            for (Map.Entry<String, Column> e : columns.entrySet()) {
+                e.getValue().write(new File(dir, e.getKey() + ".npy"));
+            }
+        }
+    }
+
+    private interface Column {
+        void write(File file) throws IOException;
+    }
+
+    private static class IntColumn implements Column {
+        int[] data = new int[1024];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        void add(MatchState s, int player, int field) {
+            add(s.hasInt(player, field) ? s.getInt(player, field) : MISSING_INT);
+        }
+
+        /**
+         * Adds delta to every non-negative value.
+         */
+        void offset(int delta) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] >= 0) data[i] += delta;
+            }
+        }
+
+        @Override
+        public void write(File file) throws IOException {
+            NpyWriter.writeInts(file, data, size, size);
+        }
+    }
+
+    private static class FloatColumn implements Column {
+        float[] data = new float[1024];
+        int size;
+
+        void add(float value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        void add(MatchState s, int player, int field) {
+            add(s.hasFloat(player, field) ? s.getFloat(player, field) : Float.NaN);
+        }
+
+        @Override
+        public void write(File file) throws IOException {
+            NpyWriter.writeFloats(file, data, size, size);
+        }
+    }
+
+    private static class LongColumn implements Column {
+        long[] data = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        @Override
+        public void write(File file) throws IOException {
+            NpyWriter.writeLongs(file, data, size, size);
+        }
+    }
+}
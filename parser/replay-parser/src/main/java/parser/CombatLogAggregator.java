@@ -0,0 +1,213 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import skadistats.clarity.model.CombatLogEntry;
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.model.StringTable;
+import skadistats.clarity.processor.gameevents.OnCombatLogEntry;
+import skadistats.clarity.processor.runner.Context;
+import skadistats.clarity.processor.stringtables.StringTables;
+import skadistats.clarity.processor.stringtables.UsesStringTable;
+
+/**
+ * Rolls the combat log up into what each player and team did over the last
+ * MatchState.RECENT_WINDOWS seconds: gold and XP earned, damage dealt to
+ * enemy heroes and hero kills per player, hero kills and objectives (towers,
+ * barracks, ancients, Roshan) per team.
+ *
+ * Events are added as they arrive into a ring of one-second buckets that
+ * covers the longest window, so nothing is recomputed from scratch: a
+ * snapshot sums the buckets once, newest first, and takes the running sums
+ * at each window boundary.
+ *
+ * The combat log names heroes (npc_dota_hero_*), not players. Heroes get a
+ * bucket column when they first show up and ReplayParser binds each player
+ * to its hero by entity name, so events from before the binding still count.
+ * Register the aggregator with the runner so it receives combat log entries,
+ * and reset it when the runner seeks back.
+ */
+public class CombatLogAggregator {
+
+    static final int MAX_HEROES = 24;
+    static final int HORIZON = MatchState.RECENT_WINDOWS[MatchState.RECENT_WINDOWS.length - 1];
+
+    private static final int TEAM_BASE = MAX_HEROES * MatchState.RECENT_PLAYER_FIELDS;
+    private static final int WIDTH = TEAM_BASE + MatchState.TEAMS * MatchState.RECENT_TEAM_FIELDS;
+    private static final int NO_HERO = -1;
+
+    // bucket (second % HORIZON) * WIDTH + column, and the second each bucket holds
+    private final int[] buckets = new int[HORIZON * WIDTH];
+    private final int[] bucketSecond = new int[HORIZON];
+    private final int[] sums = new int[WIDTH];
+
+    private final Map<String, Integer> heroColumns = new HashMap<>();
+    private final int[] playerHero = new int[MatchState.PLAYERS];
+    private final int[] playerHandle = new int[MatchState.PLAYERS];
+    private final FieldPathCache fieldPaths;
+
+    public CombatLogAggregator(FieldPathCache fieldPaths) {
+        this.fieldPaths = fieldPaths;
+        Arrays.fill(bucketSecond, Integer.MIN_VALUE);
+        Arrays.fill(playerHero, NO_HERO);
+        Arrays.fill(playerHandle, -1);
+    }
+
+    @UsesStringTable("EntityNames")
+    @OnCombatLogEntry
+    public void onCombatLogEntry(Context ctx, CombatLogEntry cle) {
+        int second = ctx.getTick() / ReplayParser.TICK_RATE;
+        switch (cle.getType().name()) {
+            case "DOTA_COMBATLOG_GOLD":
+                if (cle.isTargetHero() && !cle.isTargetIllusion() && cle.getValue() > 0) {
+                    addHero(second, cle.getTargetName(), MatchState.RECENT_GOLD, cle.getValue());
+                }
+                break;
+            case "DOTA_COMBATLOG_XP":
+                if (cle.isTargetHero() && !cle.isTargetIllusion()) {
+                    addHero(second, cle.getTargetName(), MatchState.RECENT_XP, cle.getValue());
+                }
+                break;
+            case "DOTA_COMBATLOG_DAMAGE":
+                if (cle.isAttackerHero() && !cle.isAttackerIllusion() && cle.isTargetHero() && !cle.isTargetIllusion()
+                        && cle.getAttackerTeam() != cle.getTargetTeam()) {
+                    addHero(second, cle.getAttackerName(), MatchState.RECENT_HERO_DAMAGE, cle.getValue());
+                }
+                break;
+            case "DOTA_COMBATLOG_DEATH":
+                if (cle.isTargetHero() && !cle.isTargetIllusion() && isTeam(cle.getTargetTeam())) {
+                    if (cle.isAttackerHero() && !cle.isAttackerIllusion() && cle.getAttackerTeam() != cle.getTargetTeam()) {
+                        addHero(second, cle.getAttackerName(), MatchState.RECENT_KILLS, 1);
+                    }
+                    // a kill of the other team, whoever landed the last hit
+                    addTeam(second, 1 - MatchState.teamIndex(cle.getTargetTeam()), MatchState.RECENT_TEAM_KILLS);
+                } else if (AdaptiveScheduler.isObjective(cle.getTargetName()) && isTeam(cle.getAttackerTeam())
+                        && cle.getAttackerTeam() != cle.getTargetTeam()) {
+                    addTeam(second, MatchState.teamIndex(cle.getAttackerTeam()), MatchState.RECENT_OBJECTIVES);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Drops everything aggregated so far, for a runner that seeks back.
+     */
+    public void reset() {
+        Arrays.fill(bucketSecond, Integer.MIN_VALUE);
+        Arrays.fill(playerHero, NO_HERO);
+        Arrays.fill(playerHandle, -1);
+        heroColumns.clear();
+    }
+
+    /**
+     * Binds a player to its hero entity; cheap once the hero is known.
+     */
+    public void bind(Context ctx, int player, Entity hero) {
+        if (playerHandle[player] == hero.getHandle()) {
+            return;
+        }
+        StringTable names = ctx.getProcessor(StringTables.class).forName("EntityNames");
+        Integer nameIdx = fieldPaths.get(hero, "m_pEntity.m_nameStringableIndex");
+        String name = names != null && nameIdx != null ? names.getNameByIndex(nameIdx) : null;
+        if (name != null) {
+            bind(player, hero.getHandle(), name);
+        }
+    }
+
+    void bind(int player, int handle, String heroName) {
+        playerHero[player] = column(heroName);
+        playerHandle[player] = handle;
+    }
+
+    /**
+     * Fills in state.recentPlayer and state.recentTeam as of tick.
+     */
+    public void compute(MatchState state, int tick) {
+        int now = tick / ReplayParser.TICK_RATE;
+        Arrays.fill(sums, 0);
+        int w = 0;
+        for (int age = 0; age < HORIZON; age++) {
+            int second = now - age;
+            int bucket = Math.floorMod(second, HORIZON);
+            if (bucketSecond[bucket] == second) {
+                int base = bucket * WIDTH;
+                for (int c = 0; c < WIDTH; c++) {
+                    sums[c] += buckets[base + c];
+                }
+            }
+            if (age + 1 == MatchState.RECENT_WINDOWS[w]) {
+                store(state, w);
+                w++;
+            }
+        }
+
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            if (playerHero[p] == NO_HERO) {
+                Arrays.fill(state.recentPlayer, p * MatchState.RECENT_PLAYER_KEYS.length,
+                    (p + 1) * MatchState.RECENT_PLAYER_KEYS.length, 0);
+            }
+        }
+        state.hasRecent = true;
+    }
+
+    private void store(MatchState state, int w) {
+        int windows = MatchState.RECENT_WINDOWS.length;
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            int hero = playerHero[p];
+            if (hero == NO_HERO) continue;
+            for (int f = 0; f < MatchState.RECENT_PLAYER_FIELDS; f++) {
+                state.recentPlayer[(p * MatchState.RECENT_PLAYER_FIELDS + f) * windows + w] =
+                    sums[hero * MatchState.RECENT_PLAYER_FIELDS + f];
+            }
+        }
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            for (int f = 0; f < MatchState.RECENT_TEAM_FIELDS; f++) {
+                state.recentTeam[(t * MatchState.RECENT_TEAM_FIELDS + f) * windows + w] =
+                    sums[TEAM_BASE + t * MatchState.RECENT_TEAM_FIELDS + f];
+            }
+        }
+    }
+
+    void addHero(int second, String heroName, int field, int value) {
+        if (heroName == null) return;
+        int hero = column(heroName);
+        if (hero == NO_HERO) return;
+        buckets[bucket(second) + hero * MatchState.RECENT_PLAYER_FIELDS + field] += value;
+    }
+
+    void addTeam(int second, int team, int field) {
+        buckets[bucket(second) + TEAM_BASE + team * MatchState.RECENT_TEAM_FIELDS + field]++;
+    }
+
+    /**
+     * Offset of the bucket of second, emptied first if it still holds an older second.
+     */
+    private int bucket(int second) {
+        int bucket = Math.floorMod(second, HORIZON);
+        if (bucketSecond[bucket] != second) {
+            bucketSecond[bucket] = second;
+            Arrays.fill(buckets, bucket * WIDTH, (bucket + 1) * WIDTH, 0);
+        }
+        return bucket * WIDTH;
+    }
+
+    private int column(String heroName) {
+        Integer column = heroColumns.get(heroName);
+        if (column == null) {
+            if (heroColumns.size() == MAX_HEROES) {
+                return NO_HERO;
+            }
+            column = heroColumns.size();
+            heroColumns.put(heroName, column);
+        }
+        return column;
+    }
+
+    private static boolean isTeam(int team) {
+        return team == 2 || team == 3;
+    }
+}
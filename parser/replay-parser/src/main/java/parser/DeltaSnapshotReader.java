@@ -0,0 +1,211 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Rebuilds full snapshots from a file written by DeltaSnapshotSink.
+ *
+ * Lines are kept raw and only parsed when needed, so stateAt() costs the
+ * replay of at most one keyframe interval of deltas.
+ *
+ * Also usable from the command line to expand a delta file into the regular
+ * JSON snapshot format:
+ * java -cp replay-parser-1.0.0.jar parser.DeltaSnapshotReader <in.delta> <out.json>
+ */
+public class DeltaSnapshotReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<Float> matchTimes = new ArrayList<>();
+    private final List<Boolean> keyframes = new ArrayList<>();
+
+    public DeltaSnapshotReader(String path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                JsonNode head = MAPPER.readTree(line);
+                lines.add(line);
+                matchTimes.add(head.get("matchTime").floatValue());
+                keyframes.add(head.get("keyframe").booleanValue());
+            }
+        }
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public float matchTime(int index) {
+        return matchTimes.get(index);
+    }
+
+    /**
+     * Full state of the last snapshot at or before matchTime, or null if the
+     * file has no snapshot that early.
+     */
+    public MatchState stateAt(float matchTime) throws IOException {
+        int index = -1;
+        for (int i = 0; i < matchTimes.size() && matchTimes.get(i) <= matchTime; i++) {
+            index = i;
+        }
+        return index < 0 ? null : stateAtIndex(index);
+    }
+
+    public MatchState stateAtIndex(int index) throws IOException {
+        int keyframe = index;
+        while (!keyframes.get(keyframe)) {
+            keyframe--;
+        }
+        MatchState state = new MatchState();
+        for (int i = keyframe; i <= index; i++) {
+            apply(state, MAPPER.readTree(lines.get(i)));
+        }
+        return state;
+    }
+
+    /**
+     * Writes every snapshot in the regular JSON snapshot format.
+     */
+    public void writeJson(String outputPath) throws IOException {
+        try (JsonGenerator gen = new JsonFactory().createGenerator(new File(outputPath), JsonEncoding.UTF8)) {
+            SnapshotWriter writer = new SnapshotWriter(gen);
+            gen.writeStartObject();
+            MatchState state = new MatchState();
+            for (int i = 0; i < lines.size(); i++) {
+                JsonNode line = MAPPER.readTree(lines.get(i));
+                if (keyframes.get(i)) {
+                    state = new MatchState();
+                }
+                apply(state, line);
+                writer.write(matchTimes.get(i), state);
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    static void apply(MatchState s, JsonNode line) {
+        s.tick = line.get("tick").intValue();
+        JsonNode winProbability = line.get("radiantWinProbability");
+        s.hasWinProbability = winProbability != null;
+        s.radiantWinProbability = winProbability != null && !winProbability.isNull() ? winProbability.floatValue() : Float.NaN;
+
+        JsonNode roster = line.get("roster");
+        if (roster != null) {
+            for (int t = 0; t < MatchState.TEAMS; t++) {
+                s.rosterSize[t] = 0;
+                for (JsonNode p : roster.get(DeltaSnapshotSink.TEAM_KEYS[t])) {
+                    s.roster[t][s.rosterSize[t]++] = p.intValue();
+                }
+            }
+        }
+
+        JsonNode players = line.get("players");
+        if (players != null) {
+            Iterator<Map.Entry<String, JsonNode>> it = players.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> e = it.next();
+                applyPlayer(s, Integer.parseInt(e.getKey()), e.getValue());
+            }
+        }
+
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            String team = DeltaSnapshotSink.TEAM_KEYS[t];
+
+            JsonNode totals = line.path("teams").get(team);
+            if (totals != null) {
+                for (int f = 0; f < MatchState.TEAM_FIELDS; f++) {
+                    JsonNode v = totals.get(MatchState.TEAM_FIELD_NAMES[f]);
+                    if (v != null) s.teamTotals[t * MatchState.TEAM_FIELDS + f] = v.intValue();
+                }
+                for (int f = 0; f < MatchState.MAP_FEATURES; f++) {
+                    JsonNode v = totals.get(MatchState.MAP_FEATURE_NAMES[f]);
+                    if (v != null) {
+                        s.mapFeatures[t * MatchState.MAP_FEATURES + f] = v.floatValue();
+                        s.hasMapFeatures = true;
+                    }
+                }
+                readRecent(s, totals, MatchState.RECENT_TEAM_KEYS, s.recentTeam, t);
+            }
+
+            JsonNode buildings = line.path("buildings").get(team);
+            if (buildings != null) {
+                for (int slot = 0; slot < MatchState.BUILDING_SLOTS; slot++) {
+                    JsonNode b = buildings.get(SnapshotWriter.BUILDING_KEYS[slot]);
+                    if (b == null) continue;
+                    int i = t * MatchState.BUILDING_SLOTS + slot;
+                    if (b.has("name")) s.buildingNames[i] = b.get("name").textValue();
+                    s.buildingHealth[i] = b.get("health").intValue();
+                }
+            }
+
+            JsonNode wards = line.path("wards").get(team);
+            if (wards != null) {
+                s.wardCount[t] = 0;
+                for (JsonNode w : wards) {
+                    s.addWard(t, w.get("x").floatValue(), w.get("y").floatValue());
+                }
+            }
+        }
+    }
+
+    private static void applyPlayer(MatchState s, int p, JsonNode fields) {
+        if (fields.has("name")) s.names[p] = fields.get("name").textValue();
+        if (fields.has("unit")) s.units[p] = fields.get("unit").textValue();
+        if (fields.has("steamId")) {
+            JsonNode v = fields.get("steamId");
+            s.setSteamId(p, v.isNull() ? null : v.longValue());
+        }
+        for (int f = 0; f < MatchState.INT_FIELDS; f++) {
+            JsonNode v = fields.get(MatchState.INT_FIELD_NAMES[f]);
+            if (v != null) s.setInt(p, f, v.isNull() ? null : v.intValue());
+        }
+        for (int f = 0; f < MatchState.FLOAT_FIELDS; f++) {
+            JsonNode v = fields.get(MatchState.FLOAT_FIELD_NAMES[f]);
+            if (v != null) s.setFloat(p, f, v.isNull() ? null : v.floatValue());
+        }
+        readRecent(s, fields, MatchState.RECENT_PLAYER_KEYS, s.recentPlayer, p);
+        JsonNode inventory = fields.get("inventory");
+        if (inventory != null) {
+            s.clearInventory(p);
+            for (JsonNode item : inventory) {
+                s.setItem(p, item.get("slot").intValue(), item.get("id").textValue(),
+                    item.get("num_charges").intValue(), item.get("num_secondary_charges").intValue());
+            }
+        }
+    }
+
+    private static void readRecent(MatchState s, JsonNode fields, String[] keys, int[] values, int row) {
+        for (int k = 0; k < keys.length; k++) {
+            JsonNode v = fields.get(keys[k]);
+            if (v != null) {
+                values[row * keys.length + k] = v.intValue();
+                s.hasRecent = true;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java -cp replay-parser-1.0.0.jar parser.DeltaSnapshotReader <in.delta> <out.json>");
+            return;
+        }
+        new DeltaSnapshotReader(args[0]).writeJson(args[1]);
+    }
+}
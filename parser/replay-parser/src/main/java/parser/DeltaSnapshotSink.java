@@ -0,0 +1,272 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes snapshots as delta-encoded JSON lines.
+ *
+ * Every keyframeInterval-th line is a keyframe holding the full state; the
+ * lines in between only hold what changed since the previous snapshot:
+ *
+ *   {"matchTime":600,"tick":27000,"keyframe":false,
+ *    "players":{"3":{"kills":5,"x":101.25}},
+ *    "teams":{"dire":{"totalTowersKilled":2}},
+ *    "buildings":{"radiant":{"topTier1":{"health":0}}},
+ *    "wards":{"dire":[{"x":120.5,"y":99.75}]}}
+ *
+ * Player fields use the names of the JSON snapshot format and a field that
+ * became unknown is written as null. A changed inventory or ward list is
+ * written whole. Sections without changes are left out. A model's
+ * radiantWinProbability changes every snapshot and is on every line after
+ * "keyframe". DeltaSnapshotReader rebuilds the full state at any matchTime.
+ */
+public class DeltaSnapshotSink implements SnapshotSink {
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+
+    static final String[] TEAM_KEYS = {"radiant", "dire"};
+
+    private final JsonGenerator gen;
+    private final int keyframeInterval;
+    private final MatchState previous = new MatchState();
+    private int written = 0;
+
+    public DeltaSnapshotSink(String outputPath, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("keyframeInterval must be greater than 0");
+        }
+        this.keyframeInterval = keyframeInterval;
+        gen = new JsonFactory().createGenerator(new File(outputPath), JsonEncoding.UTF8);
+        gen.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        boolean keyframe = written % keyframeInterval == 0;
+
+        gen.writeStartObject();
+        gen.writeFieldName("matchTime");
+        if ((int) matchTime == matchTime) gen.writeNumber((int) matchTime); else gen.writeNumber(matchTime);
+        gen.writeNumberField("tick", state.tick);
+        gen.writeBooleanField("keyframe", keyframe);
+        if (state.hasWinProbability) {
+            SnapshotWriter.writeWinProbability(gen, state);
+        }
+        if (keyframe) {
+            writeRoster(state);
+        }
+        writePlayers(state, keyframe);
+        writeTeams(state, keyframe);
+        writeBuildings(state, keyframe);
+        writeWards(state, keyframe);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+
+        previous.copyFrom(state);
+        written++;
+    }
+
+    private void writeRoster(MatchState s) throws IOException {
+        gen.writeObjectFieldStart("roster");
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            gen.writeArrayFieldStart(TEAM_KEYS[t]);
+            for (int i = 0; i < s.rosterSize[t]; i++) {
+                gen.writeNumber(s.roster[t][i]);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+
+    private void writePlayers(MatchState s, boolean all) throws IOException {
+        boolean section = false;
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            boolean player = false;
+
+            if (all || !equal(s.names[p], previous.names[p])) {
+                section = open(section, "players");
+                player = open(player, MatchState.PLAYER_KEYS[p]);
+                gen.writeStringField("name", s.names[p]);
+            }
+            if (all || s.hasSteamId(p) != previous.hasSteamId(p) || s.steamIds[p] != previous.steamIds[p]) {
+                section = open(section, "players");
+                player = open(player, MatchState.PLAYER_KEYS[p]);
+                gen.writeFieldName("steamId");
+                if (s.hasSteamId(p)) gen.writeNumber(s.steamIds[p]); else gen.writeNull();
+            }
+            for (int f = 0; f < MatchState.INT_FIELDS; f++) {
+                boolean has = s.hasInt(p, f);
+                if (all || has != previous.hasInt(p, f) || s.getInt(p, f) != previous.getInt(p, f)) {
+                    section = open(section, "players");
+                    player = open(player, MatchState.PLAYER_KEYS[p]);
+                    gen.writeFieldName(MatchState.INT_FIELD_NAMES[f]);
+                    if (has) gen.writeNumber(s.getInt(p, f)); else gen.writeNull();
+                }
+            }
+            for (int f = 0; f < MatchState.FLOAT_FIELDS; f++) {
+                boolean has = s.hasFloat(p, f);
+                if (all || has != previous.hasFloat(p, f)
+                        || Float.floatToIntBits(s.getFloat(p, f)) != Float.floatToIntBits(previous.getFloat(p, f))) {
+                    section = open(section, "players");
+                    player = open(player, MatchState.PLAYER_KEYS[p]);
+                    gen.writeFieldName(MatchState.FLOAT_FIELD_NAMES[f]);
+                    if (has) gen.writeNumber(s.getFloat(p, f)); else gen.writeNull();
+                }
+            }
+            if (all || !equal(s.units[p], previous.units[p])) {
+                section = open(section, "players");
+                player = open(player, MatchState.PLAYER_KEYS[p]);
+                gen.writeStringField("unit", s.units[p]);
+            }
+            int recent = MatchState.RECENT_PLAYER_KEYS.length;
+            for (int k = 0; s.hasRecent && k < recent; k++) {
+                int i = p * recent + k;
+                if (all || !previous.hasRecent || s.recentPlayer[i] != previous.recentPlayer[i]) {
+                    section = open(section, "players");
+                    player = open(player, MatchState.PLAYER_KEYS[p]);
+                    gen.writeNumberField(MatchState.RECENT_PLAYER_KEYS[k], s.recentPlayer[i]);
+                }
+            }
+            if (all || inventoryChanged(s, p)) {
+                section = open(section, "players");
+                player = open(player, MatchState.PLAYER_KEYS[p]);
+                writeInventory(s, p);
+            }
+
+            if (player) gen.writeEndObject();
+        }
+        if (section) gen.writeEndObject();
+    }
+
+    private boolean inventoryChanged(MatchState s, int p) {
+        int base = p * MatchState.INVENTORY_SLOTS;
+        for (int i = base; i < base + MatchState.INVENTORY_SLOTS; i++) {
+            if (!equal(s.itemIds[i], previous.itemIds[i])
+                    || s.itemCharges[i] != previous.itemCharges[i]
+                    || s.itemSecondaryCharges[i] != previous.itemSecondaryCharges[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeInventory(MatchState s, int p) throws IOException {
+        gen.writeArrayFieldStart("inventory");
+        int base = p * MatchState.INVENTORY_SLOTS;
+        for (int slot = 0; slot < MatchState.INVENTORY_SLOTS; slot++) {
+            int i = base + slot;
+            if (s.itemIds[i] == null) continue;
+            gen.writeStartObject();
+            gen.writeStringField("id", s.itemIds[i]);
+            gen.writeNumberField("slot", slot);
+            gen.writeNumberField("num_charges", s.itemCharges[i]);
+            gen.writeNumberField("num_secondary_charges", s.itemSecondaryCharges[i]);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeTeams(MatchState s, boolean all) throws IOException {
+        boolean section = false;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            boolean team = false;
+            for (int f = 0; f < MatchState.TEAM_FIELDS; f++) {
+                if (all || s.getTeamTotal(t, f) != previous.getTeamTotal(t, f)) {
+                    section = open(section, "teams");
+                    team = open(team, TEAM_KEYS[t]);
+                    gen.writeNumberField(MatchState.TEAM_FIELD_NAMES[f], s.getTeamTotal(t, f));
+                }
+            }
+            for (int f = 0; s.hasMapFeatures && f < MatchState.MAP_FEATURES; f++) {
+                int i = t * MatchState.MAP_FEATURES + f;
+                if (all || !previous.hasMapFeatures || s.mapFeatures[i] != previous.mapFeatures[i]) {
+                    section = open(section, "teams");
+                    team = open(team, TEAM_KEYS[t]);
+                    gen.writeNumberField(MatchState.MAP_FEATURE_NAMES[f], s.mapFeatures[i]);
+                }
+            }
+            int recent = MatchState.RECENT_TEAM_KEYS.length;
+            for (int k = 0; s.hasRecent && k < recent; k++) {
+                int i = t * recent + k;
+                if (all || !previous.hasRecent || s.recentTeam[i] != previous.recentTeam[i]) {
+                    section = open(section, "teams");
+                    team = open(team, TEAM_KEYS[t]);
+                    gen.writeNumberField(MatchState.RECENT_TEAM_KEYS[k], s.recentTeam[i]);
+                }
+            }
+            if (team) gen.writeEndObject();
+        }
+        if (section) gen.writeEndObject();
+    }
+
+    private void writeBuildings(MatchState s, boolean all) throws IOException {
+        boolean section = false;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            boolean team = false;
+            for (int slot = 0; slot < MatchState.BUILDING_SLOTS; slot++) {
+                int b = t * MatchState.BUILDING_SLOTS + slot;
+                if (s.buildingNames[b] == null) continue;
+                boolean nameChanged = all || !s.buildingNames[b].equals(previous.buildingNames[b]);
+                if (!nameChanged && s.buildingHealth[b] == previous.buildingHealth[b]) continue;
+
+                section = open(section, "buildings");
+                team = open(team, TEAM_KEYS[t]);
+                gen.writeObjectFieldStart(SnapshotWriter.BUILDING_KEYS[slot]);
+                if (nameChanged) gen.writeStringField("name", s.buildingNames[b]);
+                gen.writeNumberField("health", s.buildingHealth[b]);
+                gen.writeEndObject();
+            }
+            if (team) gen.writeEndObject();
+        }
+        if (section) gen.writeEndObject();
+    }
+
+    private void writeWards(MatchState s, boolean all) throws IOException {
+        boolean section = false;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            if (!all && !wardsChanged(s, t)) continue;
+            section = open(section, "wards");
+            gen.writeArrayFieldStart(TEAM_KEYS[t]);
+            for (int i = 0; i < s.wardCount[t]; i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("x", s.wardX[t][i]);
+                gen.writeNumberField("y", s.wardY[t][i]);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        if (section) gen.writeEndObject();
+    }
+
+    private boolean wardsChanged(MatchState s, int t) {
+        if (s.wardCount[t] != previous.wardCount[t]) return true;
+        for (int i = 0; i < s.wardCount[t]; i++) {
+            if (s.wardX[t][i] != previous.wardX[t][i] || s.wardY[t][i] != previous.wardY[t][i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts the object field name unless it is already open.
+     */
+    private boolean open(boolean opened, String name) throws IOException {
+        if (!opened) {
+            gen.writeObjectFieldStart(name);
+        }
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public void close() throws IOException {
+        gen.close();
+    }
+}
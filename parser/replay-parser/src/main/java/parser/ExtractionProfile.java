@@ -0,0 +1,181 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Which parts of a snapshot the parser extracts. Profiles are JSON files:
+ *
+ *   {"players": ["heroId", "level", "x", "y", "inventory"],
+ *    "teams": ["totalTowersKilled"],
+ *    "buildings": true,
+ *    "wards": false}
+ *
+ * "players" takes the player field names of the JSON snapshot format plus
+ * "unit" and "inventory"; "teams" the team total names. A section that is
+ * left out is extracted whole. A player's value, team, name and steamId are
+ * always there since they identify the player. Fields that aren't extracted
+ * are written as null, and without buildings the building tracker isn't run
+ * at all, without wards the ward scan is skipped.
+ *
+ * --profile takes a file or the name of a bundled profile:
+ * "full" (everything, the default) or "model" (the fields the models use).
+ */
+public class ExtractionProfile {
+
+    public static final ExtractionProfile FULL = new ExtractionProfile("full");
+
+    private static final String UNIT = "unit";
+    private static final String INVENTORY = "inventory";
+
+    private final String name;
+    private final boolean[] intFields = new boolean[MatchState.INT_FIELDS];
+    private final boolean[] floatFields = new boolean[MatchState.FLOAT_FIELDS];
+    private final boolean[] teamFields = new boolean[MatchState.TEAM_FIELDS];
+    private boolean units = true;
+    private boolean inventory = true;
+    private boolean buildings = true;
+    private boolean wards = true;
+
+    private ExtractionProfile(String name) {
+        this.name = name;
+        Arrays.fill(intFields, true);
+        Arrays.fill(floatFields, true);
+        Arrays.fill(teamFields, true);
+    }
+
+    public static ExtractionProfile load(String nameOrPath) throws IOException {
+        if (nameOrPath.equals(FULL.name)) {
+            return FULL;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        try (InputStream bundled = ExtractionProfile.class.getResourceAsStream("/profiles/" + nameOrPath + ".json")) {
+            if (bundled != null) {
+                return parse(nameOrPath, mapper.readTree(bundled));
+            }
+        }
+        File file = new File(nameOrPath);
+        if (!file.isFile()) {
+            throw new IOException("No extraction profile file or bundled profile named " + nameOrPath);
+        }
+        return parse(file.getName(), mapper.readTree(file));
+    }
+
+    static ExtractionProfile parse(String name, JsonNode config) {
+        ExtractionProfile profile = new ExtractionProfile(name);
+
+        JsonNode players = config.get("players");
+        if (players != null) {
+            Arrays.fill(profile.intFields, false);
+            Arrays.fill(profile.floatFields, false);
+            profile.units = false;
+            profile.inventory = false;
+            for (JsonNode field : players) {
+                profile.selectPlayerField(field.asText());
+            }
+        }
+        profile.intFields[MatchState.VALUE] = true;
+        profile.intFields[MatchState.TEAM] = true;
+
+        JsonNode teams = config.get("teams");
+        if (teams != null) {
+            Arrays.fill(profile.teamFields, false);
+            for (JsonNode field : teams) {
+                int f = Arrays.asList(MatchState.TEAM_FIELD_NAMES).indexOf(field.asText());
+                if (f < 0) {
+                    throw new IllegalArgumentException("Unknown team field " + field.asText()
+                        + " in profile " + name + ", expected one of " + Arrays.toString(MatchState.TEAM_FIELD_NAMES));
+                }
+                profile.teamFields[f] = true;
+            }
+        }
+
+        profile.buildings = config.path("buildings").asBoolean(true);
+        profile.wards = config.path("wards").asBoolean(true);
+        return profile;
+    }
+
+    private void selectPlayerField(String field) {
+        if (field.equals(UNIT)) {
+            units = true;
+            return;
+        }
+        if (field.equals(INVENTORY)) {
+            inventory = true;
+            return;
+        }
+        int f = Arrays.asList(MatchState.INT_FIELD_NAMES).indexOf(field);
+        if (f >= 0) {
+            intFields[f] = true;
+            return;
+        }
+        f = Arrays.asList(MatchState.FLOAT_FIELD_NAMES).indexOf(field);
+        if (f >= 0) {
+            floatFields[f] = true;
+            return;
+        }
+        List<String> valid = new ArrayList<>(Arrays.asList(MatchState.INT_FIELD_NAMES));
+        valid.addAll(Arrays.asList(MatchState.FLOAT_FIELD_NAMES));
+        valid.add(UNIT);
+        valid.add(INVENTORY);
+        throw new IllegalArgumentException("Unknown player field " + field + " in profile " + name + ", expected one of " + valid);
+    }
+
+    public boolean intField(int field) {
+        return intFields[field];
+    }
+
+    public boolean floatField(int field) {
+        return floatFields[field];
+    }
+
+    public boolean teamField(int field) {
+        return teamFields[field];
+    }
+
+    public boolean units() {
+        return units;
+    }
+
+    public boolean inventory() {
+        return inventory;
+    }
+
+    public boolean buildings() {
+        return buildings;
+    }
+
+    public boolean wards() {
+        return wards;
+    }
+
+    /**
+     * Whether any selected field is read from the hero entity.
+     */
+    public boolean needsHeroEntity() {
+        return units || inventory || intFields[MatchState.LIFE_STATE]
+            || floatFields[MatchState.X] || floatFields[MatchState.Y];
+    }
+
+    /**
+     * Name plus the selected fields, part of the batch parser signature.
+     */
+    public String signature() {
+        if (this == FULL) {
+            return name;
+        }
+        StringBuilder bits = new StringBuilder();
+        for (boolean b : intFields) bits.append(b ? '1' : '0');
+        for (boolean b : floatFields) bits.append(b ? '1' : '0');
+        for (boolean b : teamFields) bits.append(b ? '1' : '0');
+        for (boolean b : new boolean[] {units, inventory, buildings, wards}) bits.append(b ? '1' : '0');
+        return name + ":" + bits;
+    }
+}
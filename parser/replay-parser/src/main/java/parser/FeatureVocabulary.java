@@ -0,0 +1,102 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Hero and item ids to embedding indices, read from the hero_to_idx.json and
+ * item_to_idx.json files the training notebook writes:
+ *
+ *   hero_to_idx.json  {"1": 0, "2": 1, ...}            heroId -> index
+ *   item_to_idx.json  {"<PAD>": 0, "item_blink": 1, ...}
+ *
+ * Items missing from the vocabulary map to the padding index, like the
+ * notebook's encode_timeslice does. The vocabulary is read-only once loaded
+ * and shared by all replays of a batch.
+ */
+public class FeatureVocabulary {
+
+    public static final String HERO_FILE = "hero_to_idx.json";
+    public static final String ITEM_FILE = "item_to_idx.json";
+    public static final String PAD = "<PAD>";
+    public static final int UNKNOWN = -1;
+
+    private final int[] heroIndex;
+    private final Map<String, Integer> itemIndex;
+    private final int padIndex;
+    private final String signature;
+
+    public FeatureVocabulary(Map<Integer, Integer> heroes, Map<String, Integer> items) {
+        int maxHeroId = 0;
+        for (int heroId : heroes.keySet()) {
+            if (heroId < 0) {
+                throw new IllegalArgumentException("Negative hero id " + heroId + " in vocabulary");
+            }
+            maxHeroId = Math.max(maxHeroId, heroId);
+        }
+        heroIndex = new int[maxHeroId + 1];
+        Arrays.fill(heroIndex, UNKNOWN);
+        for (Map.Entry<Integer, Integer> e : heroes.entrySet()) {
+            heroIndex[e.getKey()] = e.getValue();
+        }
+
+        itemIndex = new HashMap<>(items);
+        Integer pad = items.get(PAD);
+        if (pad == null) {
+            throw new IllegalArgumentException("Item vocabulary has no " + PAD + " entry");
+        }
+        padIndex = pad;
+        signature = Integer.toHexString(new TreeMap<>(heroes).hashCode() * 31 + new TreeMap<>(items).hashCode());
+    }
+
+    /**
+     * Reads hero_to_idx.json and item_to_idx.json from a directory.
+     */
+    public static FeatureVocabulary load(File dir) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Integer> heroNames = mapper.readValue(new File(dir, HERO_FILE), new TypeReference<Map<String, Integer>>() { });
+        Map<String, Integer> items = mapper.readValue(new File(dir, ITEM_FILE), new TypeReference<Map<String, Integer>>() { });
+        Map<Integer, Integer> heroes = new HashMap<>();
+        for (Map.Entry<String, Integer> e : heroNames.entrySet()) {
+            heroes.put(Integer.parseInt(e.getKey()), e.getValue());
+        }
+        return new FeatureVocabulary(heroes, items);
+    }
+
+    /**
+     * Embedding index of a hero, or UNKNOWN.
+     */
+    public int hero(int heroId) {
+        return heroId >= 0 && heroId < heroIndex.length ? heroIndex[heroId] : UNKNOWN;
+    }
+
+    /**
+     * Embedding index of an item; the padding index for no item or one the
+     * vocabulary doesn't have.
+     */
+    public int item(String itemName) {
+        if (itemName == null) {
+            return padIndex;
+        }
+        Integer index = itemIndex.get(itemName);
+        return index != null ? index : padIndex;
+    }
+
+    public int padIndex() {
+        return padIndex;
+    }
+
+    /**
+     * Short content hash, part of the batch parser signature.
+     */
+    public String signature() {
+        return signature;
+    }
+}
@@ -0,0 +1,104 @@
+package parser;
+
+import skadistats.clarity.io.Util;
+import skadistats.clarity.model.DTClass;
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.model.FieldPath;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Resolves property name templates such as "m_vecPlayerTeamData.%i.m_iKills"
+ * to FieldPaths once per (DTClass, template, index) and remembers the result,
+ * so repeated reads don't rebuild property names or walk the serializer.
+ */
+public class FieldPathCache {
+
+    private static class Entry {
+        FieldPath[] paths = new FieldPath[0];
+        boolean[] resolved = new boolean[0];
+    }
+
+    private static final int NO_INDEX = -1;
+
+    private final Map<DTClass, Map<String, Entry>> cache = new IdentityHashMap<>();
+    private final boolean enabled;
+
+    public FieldPathCache() {
+        this(true);
+    }
+
+    /**
+     * @param enabled when false every call resolves the name again, which is
+     *                the pre-cache behaviour kept around for benchmarking
+     */
+    public FieldPathCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Reads a property through the cache, returning null when the entity is
+     * missing, the class has no such property or the read fails.
+     */
+    public <T> T get(Entity e, String template) {
+        return get(e, template, NO_INDEX);
+    }
+
+    public <T> T get(Entity e, String template, int idx) {
+        try {
+            if (e == null) {
+                return null;
+            }
+            FieldPath fp = resolve(e.getDtClass(), template, idx);
+            if (fp == null) {
+                return null;
+            }
+            return e.getPropertyForFieldPath(fp);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    public FieldPath resolve(DTClass dtClass, String template) {
+        return resolve(dtClass, template, NO_INDEX);
+    }
+
+    public FieldPath resolve(DTClass dtClass, String template, int idx) {
+        if (!enabled) {
+            return dtClass.getFieldPathForName(propertyName(template, idx));
+        }
+
+        Map<String, Entry> byTemplate = cache.get(dtClass);
+        if (byTemplate == null) {
+            byTemplate = new HashMap<>();
+            cache.put(dtClass, byTemplate);
+        }
+        Entry entry = byTemplate.get(template);
+        if (entry == null) {
+            entry = new Entry();
+            byTemplate.put(template, entry);
+        }
+
+        int slot = idx + 1;
+        if (slot >= entry.paths.length) {
+            int size = Math.max(slot + 1, entry.paths.length * 2);
+            FieldPath[] paths = new FieldPath[size];
+            boolean[] resolved = new boolean[size];
+            System.arraycopy(entry.paths, 0, paths, 0, entry.paths.length);
+            System.arraycopy(entry.resolved, 0, resolved, 0, entry.resolved.length);
+            entry.paths = paths;
+            entry.resolved = resolved;
+        }
+        if (!entry.resolved[slot]) {
+            entry.paths[slot] = dtClass.getFieldPathForName(propertyName(template, idx));
+            entry.resolved[slot] = true;
+        }
+        return entry.paths[slot];
+    }
+
+    private static String propertyName(String template, int idx) {
+        return idx == NO_INDEX ? template : template.replace("%i", Util.arrayIdxToString(idx));
+    }
+}
@@ -0,0 +1,43 @@
+package parser;
+
+/**
+ * Samples on a fixed grid of every N ticks (the default is 30 s = 900 ticks).
+ */
+public class FixedIntervalScheduler implements SamplingScheduler {
+
+    private final int intervalTicks;
+    private int nextTick = -1;
+
+    public FixedIntervalScheduler(int intervalTicks) {
+        if (intervalTicks < 1) {
+            throw new IllegalArgumentException("intervalTicks must be greater than 0");
+        }
+        this.intervalTicks = intervalTicks;
+    }
+
+    @Override
+    public boolean shouldSample(int tick) {
+        if (nextTick < 0) {
+            nextTick = ceilToGrid(tick, intervalTicks);
+        }
+        if (tick < nextTick) {
+            return false;
+        }
+        nextTick = (tick / intervalTicks + 1) * intervalTicks;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        nextTick = -1;
+    }
+
+    @Override
+    public boolean isSubSecond() {
+        return intervalTicks % ReplayParser.TICK_RATE != 0;
+    }
+
+    static int ceilToGrid(int tick, int interval) {
+        return (tick + interval - 1) / interval * interval;
+    }
+}
@@ -0,0 +1,150 @@
+package parser;
+
+import java.io.IOException;
+
+/**
+ * Annotates every snapshot with the radiant win probability of a
+ * WinProbabilityModel and passes it on to another sink.
+ *
+ * Each snapshot is featurized once, by SliceEncoder, into a ring that keeps
+ * the last window + batch slices, and held back until batch snapshots are
+ * pending. Then the windows ending at each of them go through the model in
+ * one run and the snapshots are written to the delegate in order, so the
+ * model runs on micro-batches rather than one window at a time. Snapshots
+ * before the first full window get NaN, like the notebook's
+ * infer_win_curve doesn't score them. close() scores what is still pending.
+ *
+ * Runs on the thread that writes, so ReplayParser puts it behind
+ * AsyncSnapshotSink, off the tick thread.
+ */
+public class InferenceSnapshotSink implements SnapshotSink {
+
+    public static final int DEFAULT_BATCH = 32;
+
+    private static final int PLAYERS = SliceEncoder.PLAYERS;
+    private static final int ITEMS = PLAYERS * SliceEncoder.ITEMS;
+    private static final int PLAYER_NUMS = PLAYERS * SliceEncoder.PLAYER_FEATURES;
+    private static final int TEAM_NUMS = MatchState.TEAMS * SliceEncoder.TEAM_FEATURES;
+
+    private final SnapshotSink delegate;
+    private final WinProbabilityModel model;
+    private final SliceEncoder encoder;
+    private final int window;
+
+    // featurized slices, slice n at n % capacity
+    private final int capacity;
+    private final int[] ringHeroIds;
+    private final int[] ringItemIds;
+    private final float[] ringPlayerNums;
+    private final float[] ringTeamNums;
+    private long encoded = 0;
+
+    // snapshots waiting for their batch
+    private final MatchState[] pending;
+    private final float[] matchTimes;
+    private int pendingCount = 0;
+
+    // model inputs of one batch
+    private final long[] heroIds;
+    private final long[] itemIds;
+    private final float[] playerNums;
+    private final float[] teamNums;
+    private final float[] probabilities;
+    private final int[] scored;
+
+    public InferenceSnapshotSink(SnapshotSink delegate, WinProbabilityModel model, FeatureVocabulary vocabulary, int batch) {
+        if (batch < 1) {
+            throw new IllegalArgumentException("batch must be greater than 0");
+        }
+        this.delegate = delegate;
+        this.model = model;
+        encoder = new SliceEncoder(vocabulary);
+        window = model.window();
+
+        capacity = window + batch;
+        ringHeroIds = new int[capacity * PLAYERS];
+        ringItemIds = new int[capacity * ITEMS];
+        ringPlayerNums = new float[capacity * PLAYER_NUMS];
+        ringTeamNums = new float[capacity * TEAM_NUMS];
+
+        pending = new MatchState[batch];
+        for (int i = 0; i < batch; i++) {
+            pending[i] = new MatchState();
+        }
+        matchTimes = new float[batch];
+
+        heroIds = new long[batch * window * PLAYERS];
+        itemIds = new long[batch * window * ITEMS];
+        playerNums = new float[batch * window * PLAYER_NUMS];
+        teamNums = new float[batch * window * TEAM_NUMS];
+        probabilities = new float[batch];
+        scored = new int[batch];
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        encoder.encode(state, (int) (encoded++ % capacity), ringHeroIds, ringItemIds, ringPlayerNums, ringTeamNums);
+        pending[pendingCount].copyFrom(state);
+        matchTimes[pendingCount] = matchTime;
+        if (++pendingCount == pending.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        long first = encoded - pendingCount;
+        int rows = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            long last = first + i;
+            if (last >= window - 1) {
+                gather(last - window + 1, rows);
+                scored[rows++] = i;
+            }
+        }
+        if (rows > 0) {
+            model.predict(heroIds, itemIds, playerNums, teamNums, rows, probabilities);
+        }
+
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i].hasWinProbability = true;
+            pending[i].radiantWinProbability = Float.NaN;
+        }
+        for (int r = 0; r < rows; r++) {
+            pending[scored[r]].radiantWinProbability = probabilities[r];
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            delegate.write(matchTimes[i], pending[i]);
+        }
+        pendingCount = 0;
+    }
+
+    // copies the window of slices from..from + window - 1 into batch row
+    private void gather(long from, int row) {
+        for (int k = 0; k < window; k++) {
+            int slice = (int) ((from + k) % capacity);
+            int out = row * window + k;
+            for (int j = 0; j < PLAYERS; j++) {
+                heroIds[out * PLAYERS + j] = ringHeroIds[slice * PLAYERS + j];
+            }
+            for (int j = 0; j < ITEMS; j++) {
+                itemIds[out * ITEMS + j] = ringItemIds[slice * ITEMS + j];
+            }
+            System.arraycopy(ringPlayerNums, slice * PLAYER_NUMS, playerNums, out * PLAYER_NUMS, PLAYER_NUMS);
+            System.arraycopy(ringTeamNums, slice * TEAM_NUMS, teamNums, out * TEAM_NUMS, TEAM_NUMS);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pendingCount > 0) {
+                flush();
+            }
+        } finally {
+            delegate.close();
+        }
+        if (encoder.getUnknownHeroes() > 0) {
+            System.err.println("Heroes missing from the vocabulary in " + encoder.getUnknownHeroes() + " player slices, scored as index 0");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package parser;
+
+import java.util.Arrays;
+
+import skadistats.clarity.model.Entity;
+import skadistats.clarity.model.StringTable;
+import skadistats.clarity.processor.entities.Entities;
+import skadistats.clarity.processor.runner.Context;
+import skadistats.clarity.processor.stringtables.StringTables;
+
+/**
+ * Reads hero inventories into a MatchState.
+ *
+ * The Entities processor is looked up once, item handle field paths come
+ * from the FieldPathCache and item names are cached per item entity handle,
+ * so the EntityNames table is only consulted the first time an item is
+ * seen. Slots that can't be read (an item entity that is gone, a name that
+ * isn't in the table yet) are left empty and counted instead of throwing.
+ */
+public class InventoryReader {
+
+    private static final int EMPTY_HANDLE = 0xFFFFFF;
+    private static final int INDEX_MASK = (1 << 14) - 1;
+
+    private final FieldPathCache fieldPaths;
+    private Entities entities;
+
+    // per entity index: the handle whose name is cached and that name
+    private final int[] cachedHandle = new int[INDEX_MASK + 1];
+    private final String[] cachedName = new String[INDEX_MASK + 1];
+
+    private int unreadableSlots = 0;
+    private long itemsRead = 0;
+
+    public InventoryReader(FieldPathCache fieldPaths) {
+        this.fieldPaths = fieldPaths;
+        Arrays.fill(cachedHandle, -1);
+    }
+
+    public void read(Context ctx, Entity hero, MatchState state, int player) {
+        state.clearInventory(player);
+
+        for (int slot = 0; slot < MatchState.INVENTORY_SLOTS; slot++) {
+            Integer handle = fieldPaths.get(hero, "m_hItems.%i", slot);
+            if (handle == null || handle == EMPTY_HANDLE) continue;
+
+            Entity item = entityByHandle(ctx, handle);
+            String name = item != null ? itemName(ctx, handle, item) : null;
+            if (name == null) {
+                unreadableSlots++;
+                continue;
+            }
+            itemsRead++;
+            Integer charges = fieldPaths.get(item, "m_iCurrentCharges");
+            Integer secondaryCharges = fieldPaths.get(item, "m_iSecondaryCharges");
+            state.setItem(player, slot, name,
+                charges != null ? charges : 0,
+                secondaryCharges != null ? secondaryCharges : 0);
+        }
+    }
+
+    private String itemName(Context ctx, int handle, Entity item) {
+        int index = handle & INDEX_MASK;
+        if (cachedHandle[index] == handle) {
+            return cachedName[index];
+        }
+        Integer nameIdx = fieldPaths.get(item, "m_pEntity.m_nameStringableIndex");
+        if (nameIdx == null) {
+            return null;
+        }
+        String name = entityName(ctx, nameIdx);
+        if (name != null) {
+            cachedHandle[index] = handle;
+            cachedName[index] = name;
+        }
+        return name;
+    }
+
+    /**
+     * The item entity of a handle. Package-private so the benchmarks can
+     * serve entities without a runner.
+     */
+    Entity entityByHandle(Context ctx, int handle) {
+        if (entities == null) {
+            entities = ctx.getProcessor(Entities.class);
+        }
+        return entities.getByHandle(handle);
+    }
+
+    /**
+     * Entry nameIdx of the EntityNames table, looked up on name cache misses
+     * only: the table can be replaced after a seek.
+     */
+    String entityName(Context ctx, int nameIdx) {
+        StringTable entityNames = ctx.getProcessor(StringTables.class).forName("EntityNames");
+        return entityNames != null ? entityNames.getNameByIndex(nameIdx) : null;
+    }
+
+    /**
+     * Number of occupied slots that could not be read so far.
+     */
+    public int getUnreadableSlots() {
+        return unreadableSlots;
+    }
+
+    /**
+     * Number of item entities read so far.
+     */
+    public long getItemsRead() {
+        return itemsRead;
+    }
+}
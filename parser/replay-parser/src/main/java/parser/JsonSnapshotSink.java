@@ -0,0 +1,34 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the whole replay as one JSON object keyed by matchTime.
+ */
+public class JsonSnapshotSink implements SnapshotSink {
+
+    private final JsonGenerator jsonGen;
+    private final SnapshotWriter snapshotWriter;
+
+    public JsonSnapshotSink(String outputPath) throws IOException {
+        jsonGen = new JsonFactory().createGenerator(new File(outputPath), JsonEncoding.UTF8);
+        snapshotWriter = new SnapshotWriter(jsonGen);
+        jsonGen.writeStartObject();
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        snapshotWriter.write(matchTime, state);
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonGen.writeEndObject();
+        jsonGen.close();
+    }
+}
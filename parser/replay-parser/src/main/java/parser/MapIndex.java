@@ -0,0 +1,205 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * Map-region features of both teams, computed from the hero, observer ward
+ * and building positions of a MatchState:
+ *
+ *   visionOwnSide, visionRiver, visionEnemySide
+ *       share of the team's own half, the river band and the enemy half
+ *       that its observer wards see
+ *   heroesNearEnemyBuildings
+ *       alive heroes of the team within attack range of an alive enemy
+ *       building
+ *   heroesOnEnemySide
+ *       alive heroes of the team on the enemy half
+ *   centroidDistance
+ *       distance between the alive heroes of both teams, 256 (the map
+ *       diagonal used elsewhere) when a team has none alive
+ *
+ * The playable area is a fixed grid of GRID x GRID cells. The region of every
+ * cell and the cells covered by a ward or a building around its own cell
+ * are precomputed once, so a snapshot costs one stencil stamp per ward and
+ * building plus one lookup per hero. Stamps are marked with a generation
+ * number instead of clearing the grids, and nothing is allocated per
+ * snapshot. Positions are in the same units as the hero x/y fields.
+ */
+public class MapIndex {
+
+    // playable area in map units, see getPreciseLocation
+    static final float ORIGIN = 64;
+    static final float EXTENT = 128;
+    static final int GRID = 64;
+    static final float CELL = EXTENT / GRID;
+
+    // the river is the band |x + y - 256| <= RIVER_HALF_WIDTH across the diagonal
+    static final float RIVER_HALF_WIDTH = 8;
+    // observer ward vision of 1600 and tower/fort attack range of ~900 world units
+    static final float WARD_RADIUS = 1600 / 128f;
+    static final float BUILDING_RADIUS = 900 / 128f;
+    static final float NO_CENTROID_DISTANCE = 256;
+
+    static final byte RADIANT_SIDE = 0;
+    static final byte RIVER = 1;
+    static final byte DIRE_SIDE = 2;
+
+    private static final byte[] REGION = new byte[GRID * GRID];
+    private static final int[] REGION_CELLS = new int[3];
+    private static final int[] WARD_STENCIL = stencil(WARD_RADIUS);
+    private static final int[] BUILDING_STENCIL = stencil(BUILDING_RADIUS);
+
+    static {
+        for (int cy = 0; cy < GRID; cy++) {
+            for (int cx = 0; cx < GRID; cx++) {
+                byte region = region(ORIGIN + (cx + 0.5f) * CELL, ORIGIN + (cy + 0.5f) * CELL);
+                REGION[cy * GRID + cx] = region;
+                REGION_CELLS[region]++;
+            }
+        }
+    }
+
+    // cells seen by the wards and threatened by the buildings of each team
+    private final int[][] vision = new int[MatchState.TEAMS][GRID * GRID];
+    private final int[][] threat = new int[MatchState.TEAMS][GRID * GRID];
+    private final int[] covered = new int[3];
+    private int generation = 0;
+
+    /**
+     * Fills in state.mapFeatures from the current positions.
+     */
+    public void compute(MatchState state) {
+        generation++;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            int[] seen = vision[t];
+            covered[RADIANT_SIDE] = 0;
+            covered[RIVER] = 0;
+            covered[DIRE_SIDE] = 0;
+            for (int w = 0; w < state.wardCount[t]; w++) {
+                stamp(seen, WARD_STENCIL, state.wardX[t][w], state.wardY[t][w], true);
+            }
+
+            int[] threatened = threat[t];
+            for (int s = 0; s < MatchState.BUILDING_SLOTS; s++) {
+                int b = t * MatchState.BUILDING_SLOTS + s;
+                if (state.buildingNames[b] != null && state.buildingHealth[b] > 0 && !Float.isNaN(state.buildingX[b])) {
+                    stamp(threatened, BUILDING_STENCIL, state.buildingX[b], state.buildingY[b], false);
+                }
+            }
+
+            int f = t * MatchState.MAP_FEATURES;
+            byte own = t == 0 ? RADIANT_SIDE : DIRE_SIDE;
+            byte enemy = t == 0 ? DIRE_SIDE : RADIANT_SIDE;
+            state.mapFeatures[f + MatchState.VISION_OWN_SIDE] = (float) covered[own] / REGION_CELLS[own];
+            state.mapFeatures[f + MatchState.VISION_RIVER] = (float) covered[RIVER] / REGION_CELLS[RIVER];
+            state.mapFeatures[f + MatchState.VISION_ENEMY_SIDE] = (float) covered[enemy] / REGION_CELLS[enemy];
+        }
+
+        float cx0 = 0, cy0 = 0, cx1 = 0, cy1 = 0;
+        int alive0 = 0, alive1 = 0;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            int[] enemyThreat = threat[1 - t];
+            byte enemy = t == 0 ? DIRE_SIDE : RADIANT_SIDE;
+            int near = 0;
+            int onEnemySide = 0;
+            for (int i = 0; i < state.rosterSize[t]; i++) {
+                int p = state.roster[t][i];
+                if (!isAlive(state, p)) {
+                    continue;
+                }
+                float x = state.getFloat(p, MatchState.X);
+                float y = state.getFloat(p, MatchState.Y);
+                int cell = cell(x, y);
+                if (enemyThreat[cell] == generation) {
+                    near++;
+                }
+                if (REGION[cell] == enemy) {
+                    onEnemySide++;
+                }
+                if (t == 0) {
+                    cx0 += x;
+                    cy0 += y;
+                    alive0++;
+                } else {
+                    cx1 += x;
+                    cy1 += y;
+                    alive1++;
+                }
+            }
+            int f = t * MatchState.MAP_FEATURES;
+            state.mapFeatures[f + MatchState.HEROES_NEAR_ENEMY_BUILDINGS] = near;
+            state.mapFeatures[f + MatchState.HEROES_ON_ENEMY_SIDE] = onEnemySide;
+        }
+
+        float distance = NO_CENTROID_DISTANCE;
+        if (alive0 > 0 && alive1 > 0) {
+            distance = (float) Math.hypot(cx0 / alive0 - cx1 / alive1, cy0 / alive0 - cy1 / alive1);
+        }
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            state.mapFeatures[t * MatchState.MAP_FEATURES + MatchState.CENTROID_DISTANCE] = distance;
+        }
+        state.hasMapFeatures = true;
+    }
+
+    private static boolean isAlive(MatchState state, int p) {
+        return state.hasFloat(p, MatchState.X) && state.hasFloat(p, MatchState.Y)
+            && (!state.hasInt(p, MatchState.LIFE_STATE) || state.getInt(p, MatchState.LIFE_STATE) == 0);
+    }
+
+    /**
+     * Marks the stencil around (x, y) with the current generation; with count,
+     * newly marked cells are added to the region coverage.
+     */
+    private void stamp(int[] grid, int[] stencil, float x, float y, boolean count) {
+        int cx = clamp((int) ((x - ORIGIN) / CELL));
+        int cy = clamp((int) ((y - ORIGIN) / CELL));
+        for (int k = 0; k < stencil.length; k += 2) {
+            int gx = cx + stencil[k];
+            int gy = cy + stencil[k + 1];
+            if (gx < 0 || gx >= GRID || gy < 0 || gy >= GRID) {
+                continue;
+            }
+            int cell = gy * GRID + gx;
+            if (grid[cell] != generation) {
+                grid[cell] = generation;
+                if (count) {
+                    covered[REGION[cell]]++;
+                }
+            }
+        }
+    }
+
+    static int cell(float x, float y) {
+        return clamp((int) ((y - ORIGIN) / CELL)) * GRID + clamp((int) ((x - ORIGIN) / CELL));
+    }
+
+    static byte region(float x, float y) {
+        float diagonal = x + y - 2 * (ORIGIN + EXTENT / 2);
+        if (diagonal < -RIVER_HALF_WIDTH) {
+            return RADIANT_SIDE;
+        }
+        return diagonal > RIVER_HALF_WIDTH ? DIRE_SIDE : RIVER;
+    }
+
+    private static int clamp(int c) {
+        return c < 0 ? 0 : (c >= GRID ? GRID - 1 : c);
+    }
+
+    /**
+     * (dx, dy) pairs of the cells whose centers are within radius of a cell center.
+     */
+    private static int[] stencil(float radius) {
+        int r = (int) Math.ceil(radius / CELL);
+        int[] offsets = new int[2 * (2 * r + 1) * (2 * r + 1)];
+        int n = 0;
+        for (int dy = -r; dy <= r; dy++) {
+            for (int dx = -r; dx <= r; dx++) {
+                if ((dx * dx + dy * dy) * CELL * CELL <= radius * radius) {
+                    offsets[n++] = dx;
+                    offsets[n++] = dy;
+                }
+            }
+        }
+        return Arrays.copyOf(offsets, n);
+    }
+}
@@ -0,0 +1,412 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import parser.ReplayParser.Building;
+import parser.ReplayParser.Item;
+import parser.ReplayParser.Player;
+import parser.ReplayParser.Team;
+
+/**
+ * Per-tick match state in a primitive struct-of-arrays layout.
+ *
+ * Player stats live in {@link #ints} and {@link #floats}, indexed by
+ * {@code player * INT_FIELDS + field} / {@code player * FLOAT_FIELDS + field}.
+ * Nullable fields have a presence bit in {@link #present}: int field f is bit
+ * f and float field f is bit FLOAT_BIT + f. Teams are indexed 0 (radiant)
+ * and 1 (dire). Nothing here is boxed; only the output stage turns the state
+ * into the public Team/Player JSON shape.
+ */
+public class MatchState {
+
+    public static final int PLAYERS = 10;
+    public static final int TEAMS = 2;
+    public static final int INVENTORY_SLOTS = 8;
+    public static final int BUILDING_SLOTS = SnapshotWriter.BUILDING_KEYS.length;
+
+    public static final int VALUE = 0;
+    public static final int TEAM = 1;
+    public static final int HERO_ID = 2;
+    public static final int HERO_VARIANT = 3;
+    public static final int LEVEL = 4;
+    public static final int XP = 5;
+    public static final int NETWORTH = 6;
+    public static final int TOTAL_GOLD = 7;
+    public static final int CURRENT_GOLD = 8;
+    public static final int LIFE_STATE = 9;
+    public static final int RESPAWN_SECONDS = 10;
+    public static final int HERO_DAMAGE = 11;
+    public static final int TOWER_DAMAGE = 12;
+    public static final int DAMAGE_TAKEN_PRE_REDUCTION = 13;
+    public static final int DAMAGE_TAKEN_POST_REDUCTION = 14;
+    public static final int KILLS = 15;
+    public static final int DEATHS = 16;
+    public static final int ASSISTS = 17;
+    public static final int LAST_HITS = 18;
+    public static final int DENIES = 19;
+    public static final int OBS_PLACED = 20;
+    public static final int SEN_PLACED = 21;
+    public static final int INT_FIELDS = 22;
+
+    public static final int BUYBACK_COOLDOWN = 0;
+    public static final int HEALING = 1;
+    public static final int TEAMFIGHT_PARTICIPATION = 2;
+    public static final int X = 3;
+    public static final int Y = 4;
+    public static final int FLOAT_FIELDS = 5;
+
+    // JSON names of the int and float fields, by field id
+    public static final String[] INT_FIELD_NAMES = {
+        "value", "team", "heroId", "heroVariant", "level", "xp", "networth", "totalGold", "currentGold",
+        "lifeState", "respawnSeconds", "heroDamage", "towerDamage", "damageTakenPreReduction",
+        "damageTakenPostReduction", "kills", "deaths", "assists", "lastHits", "denies", "obsPlaced", "senPlaced"
+    };
+    public static final String[] FLOAT_FIELD_NAMES = {
+        "buybackCooldown", "healing", "teamfightParticipation", "x", "y"
+    };
+
+    public static final int FLOAT_BIT = 32;
+    public static final int STEAM_ID_BIT = 48;
+
+    public static final int CAMPS_STACKED = 0;
+    public static final int RUNE_PICKUPS = 1;
+    public static final int TOWERS_KILLED = 2;
+    public static final int ROSHANS_KILLED = 3;
+    public static final int SMOKES_USED = 4;
+    public static final int TEAM_FIELDS = 5;
+
+    public static final String[] TEAM_FIELD_NAMES = {
+        "totalCampsStacked", "totalRunePickups", "totalTowersKilled", "totalRoshansKilled", "totalSmokesUsed"
+    };
+
+    // map features of each team, see MapIndex
+    public static final int VISION_OWN_SIDE = 0;
+    public static final int VISION_RIVER = 1;
+    public static final int VISION_ENEMY_SIDE = 2;
+    public static final int HEROES_NEAR_ENEMY_BUILDINGS = 3;
+    public static final int HEROES_ON_ENEMY_SIDE = 4;
+    public static final int CENTROID_DISTANCE = 5;
+    public static final int MAP_FEATURES = 6;
+
+    public static final String[] MAP_FEATURE_NAMES = {
+        "visionOwnSide", "visionRiver", "visionEnemySide", "heroesNearEnemyBuildings", "heroesOnEnemySide", "centroidDistance"
+    };
+
+    // combat log activity over the last RECENT_WINDOWS seconds, see CombatLogAggregator
+    public static final int[] RECENT_WINDOWS = {30, 60, 120};
+    public static final int RECENT_GOLD = 0;
+    public static final int RECENT_XP = 1;
+    public static final int RECENT_HERO_DAMAGE = 2;
+    public static final int RECENT_KILLS = 3;
+    public static final int RECENT_PLAYER_FIELDS = 4;
+    public static final int RECENT_TEAM_KILLS = 0;
+    public static final int RECENT_OBJECTIVES = 1;
+    public static final int RECENT_TEAM_FIELDS = 2;
+
+    public static final String[] RECENT_PLAYER_FIELD_NAMES = {"goldEarned", "xpEarned", "heroDamage", "kills"};
+    public static final String[] RECENT_TEAM_FIELD_NAMES = {"kills", "objectives"};
+    // field name + window, e.g. "goldEarned60", in the order of the recent arrays
+    public static final String[] RECENT_PLAYER_KEYS = recentKeys(RECENT_PLAYER_FIELD_NAMES);
+    public static final String[] RECENT_TEAM_KEYS = recentKeys(RECENT_TEAM_FIELD_NAMES);
+
+    public static final String[] PLAYER_KEYS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    // server tick the state was sampled at
+    public int tick;
+
+    // players
+    public final int[] ints = new int[PLAYERS * INT_FIELDS];
+    public final float[] floats = new float[PLAYERS * FLOAT_FIELDS];
+    public final long[] present = new long[PLAYERS];
+    public final long[] steamIds = new long[PLAYERS];
+    public final String[] names = new String[PLAYERS];
+    public final String[] units = new String[PLAYERS];
+
+    // inventory by player * INVENTORY_SLOTS + slot; a null id is an empty slot
+    // and 0 charges are written as null
+    public final String[] itemIds = new String[PLAYERS * INVENTORY_SLOTS];
+    public final int[] itemCharges = new int[PLAYERS * INVENTORY_SLOTS];
+    public final int[] itemSecondaryCharges = new int[PLAYERS * INVENTORY_SLOTS];
+
+    // players of each team in roster order, fixed once players are initialized
+    public final int[][] roster = new int[TEAMS][PLAYERS];
+    public final int[] rosterSize = new int[TEAMS];
+
+    // teams
+    public final int[] teamTotals = new int[TEAMS * TEAM_FIELDS];
+    // buildings by team * BUILDING_SLOTS + slot; a null name is an unseen building
+    public final String[] buildingNames = new String[TEAMS * BUILDING_SLOTS];
+    public final int[] buildingHealth = new int[TEAMS * BUILDING_SLOTS];
+    // building positions in map units, NaN until known; not part of the output
+    public final float[] buildingX = new float[TEAMS * BUILDING_SLOTS];
+    public final float[] buildingY = new float[TEAMS * BUILDING_SLOTS];
+
+    // observer wards of each team
+    public float[][] wardX = new float[TEAMS][16];
+    public float[][] wardY = new float[TEAMS][16];
+    public final int[] wardCount = new int[TEAMS];
+
+    // team * MAP_FEATURES + feature, only filled in when hasMapFeatures
+    public final float[] mapFeatures = new float[TEAMS * MAP_FEATURES];
+    public boolean hasMapFeatures;
+
+    // player * RECENT_PLAYER_KEYS.length + key and team * RECENT_TEAM_KEYS.length + key,
+    // only filled in when hasRecent
+    public final int[] recentPlayer = new int[PLAYERS * RECENT_PLAYER_KEYS.length];
+    public final int[] recentTeam = new int[TEAMS * RECENT_TEAM_KEYS.length];
+    public boolean hasRecent;
+
+    // set by InferenceSnapshotSink; NaN until the model has a full window
+    public float radiantWinProbability = Float.NaN;
+    public boolean hasWinProbability;
+
+    public MatchState() {
+        Arrays.fill(buildingX, Float.NaN);
+        Arrays.fill(buildingY, Float.NaN);
+    }
+
+    /**
+     * Makes this state an exact copy of other.
+     */
+    public void copyFrom(MatchState other) {
+        tick = other.tick;
+        System.arraycopy(other.ints, 0, ints, 0, ints.length);
+        System.arraycopy(other.floats, 0, floats, 0, floats.length);
+        System.arraycopy(other.present, 0, present, 0, present.length);
+        System.arraycopy(other.steamIds, 0, steamIds, 0, steamIds.length);
+        System.arraycopy(other.names, 0, names, 0, names.length);
+        System.arraycopy(other.units, 0, units, 0, units.length);
+        System.arraycopy(other.itemIds, 0, itemIds, 0, itemIds.length);
+        System.arraycopy(other.itemCharges, 0, itemCharges, 0, itemCharges.length);
+        System.arraycopy(other.itemSecondaryCharges, 0, itemSecondaryCharges, 0, itemSecondaryCharges.length);
+        for (int t = 0; t < TEAMS; t++) {
+            System.arraycopy(other.roster[t], 0, roster[t], 0, PLAYERS);
+            if (wardX[t].length < other.wardCount[t]) {
+                wardX[t] = new float[other.wardX[t].length];
+                wardY[t] = new float[other.wardY[t].length];
+            }
+            System.arraycopy(other.wardX[t], 0, wardX[t], 0, other.wardCount[t]);
+            System.arraycopy(other.wardY[t], 0, wardY[t], 0, other.wardCount[t]);
+        }
+        System.arraycopy(other.rosterSize, 0, rosterSize, 0, TEAMS);
+        System.arraycopy(other.wardCount, 0, wardCount, 0, TEAMS);
+        System.arraycopy(other.teamTotals, 0, teamTotals, 0, teamTotals.length);
+        System.arraycopy(other.buildingNames, 0, buildingNames, 0, buildingNames.length);
+        System.arraycopy(other.buildingHealth, 0, buildingHealth, 0, buildingHealth.length);
+        System.arraycopy(other.buildingX, 0, buildingX, 0, buildingX.length);
+        System.arraycopy(other.buildingY, 0, buildingY, 0, buildingY.length);
+        System.arraycopy(other.mapFeatures, 0, mapFeatures, 0, mapFeatures.length);
+        hasMapFeatures = other.hasMapFeatures;
+        System.arraycopy(other.recentPlayer, 0, recentPlayer, 0, recentPlayer.length);
+        System.arraycopy(other.recentTeam, 0, recentTeam, 0, recentTeam.length);
+        hasRecent = other.hasRecent;
+        radiantWinProbability = other.radiantWinProbability;
+        hasWinProbability = other.hasWinProbability;
+    }
+
+    private static String[] recentKeys(String[] fields) {
+        String[] keys = new String[fields.length * RECENT_WINDOWS.length];
+        for (int f = 0; f < fields.length; f++) {
+            for (int w = 0; w < RECENT_WINDOWS.length; w++) {
+                keys[f * RECENT_WINDOWS.length + w] = fields[f] + RECENT_WINDOWS[w];
+            }
+        }
+        return keys;
+    }
+
+    public static int teamIndex(int teamId) {
+        return teamId - 2;
+    }
+
+    public static int teamId(int teamIndex) {
+        return teamIndex + 2;
+    }
+
+    public void addToRoster(int player, int teamId) {
+        int t = teamIndex(teamId);
+        roster[t][rosterSize[t]++] = player;
+    }
+
+    public boolean hasInt(int player, int field) {
+        return (present[player] & (1L << field)) != 0;
+    }
+
+    public int getInt(int player, int field) {
+        return ints[player * INT_FIELDS + field];
+    }
+
+    public void setInt(int player, int field, int value) {
+        ints[player * INT_FIELDS + field] = value;
+        present[player] |= 1L << field;
+    }
+
+    public void setInt(int player, int field, Integer value) {
+        if (value != null) {
+            setInt(player, field, value.intValue());
+        } else {
+            ints[player * INT_FIELDS + field] = 0;
+            present[player] &= ~(1L << field);
+        }
+    }
+
+    public boolean hasFloat(int player, int field) {
+        return (present[player] & (1L << (FLOAT_BIT + field))) != 0;
+    }
+
+    public float getFloat(int player, int field) {
+        return floats[player * FLOAT_FIELDS + field];
+    }
+
+    public void setFloat(int player, int field, float value) {
+        floats[player * FLOAT_FIELDS + field] = value;
+        present[player] |= 1L << (FLOAT_BIT + field);
+    }
+
+    public void setFloat(int player, int field, Float value) {
+        if (value != null) {
+            setFloat(player, field, value.floatValue());
+        } else {
+            floats[player * FLOAT_FIELDS + field] = 0f;
+            present[player] &= ~(1L << (FLOAT_BIT + field));
+        }
+    }
+
+    public boolean hasSteamId(int player) {
+        return (present[player] & (1L << STEAM_ID_BIT)) != 0;
+    }
+
+    public void setSteamId(int player, Long steamId) {
+        if (steamId != null) {
+            steamIds[player] = steamId;
+            present[player] |= 1L << STEAM_ID_BIT;
+        } else {
+            steamIds[player] = 0;
+            present[player] &= ~(1L << STEAM_ID_BIT);
+        }
+    }
+
+    public void clearInventory(int player) {
+        int base = player * INVENTORY_SLOTS;
+        Arrays.fill(itemIds, base, base + INVENTORY_SLOTS, null);
+        Arrays.fill(itemCharges, base, base + INVENTORY_SLOTS, 0);
+        Arrays.fill(itemSecondaryCharges, base, base + INVENTORY_SLOTS, 0);
+    }
+
+    public void setItem(int player, int slot, String id, int charges, int secondaryCharges) {
+        int i = player * INVENTORY_SLOTS + slot;
+        itemIds[i] = id;
+        itemCharges[i] = charges;
+        itemSecondaryCharges[i] = secondaryCharges;
+    }
+
+    public int getTeamTotal(int team, int field) {
+        return teamTotals[team * TEAM_FIELDS + field];
+    }
+
+    public void addTeamTotal(int team, int field, Integer value) {
+        teamTotals[team * TEAM_FIELDS + field] += (value != null) ? value : 0;
+    }
+
+    public void resetTeamTotals() {
+        Arrays.fill(teamTotals, 0);
+    }
+
+    public void clearWards() {
+        Arrays.fill(wardCount, 0);
+    }
+
+    public void addWard(int team, float x, float y) {
+        int n = wardCount[team];
+        if (n == wardX[team].length) {
+            wardX[team] = Arrays.copyOf(wardX[team], n * 2);
+            wardY[team] = Arrays.copyOf(wardY[team], n * 2);
+        }
+        wardX[team][n] = x;
+        wardY[team][n] = y;
+        wardCount[team] = n + 1;
+    }
+
+    /**
+     * Builds the public JSON shape of one team (0 radiant, 1 dire).
+     */
+    public Team toTeam(int team) {
+        Team t = new Team(teamId(team));
+        for (int i = 0; i < rosterSize[team]; i++) {
+            t.players.add(toPlayer(roster[team][i]));
+        }
+        for (int slot = 0; slot < BUILDING_SLOTS; slot++) {
+            int b = team * BUILDING_SLOTS + slot;
+            if (buildingNames[b] != null) {
+                t.setBuilding(SnapshotWriter.BUILDING_KEYS[slot], new Building(buildingNames[b], teamId(team), buildingHealth[b]));
+            }
+        }
+        for (int i = 0; i < wardCount[team]; i++) {
+            Map<String, Float> pos = new HashMap<>();
+            pos.put("x", wardX[team][i]);
+            pos.put("y", wardY[team][i]);
+            t.observerWards.add(pos);
+        }
+        t.totalCampsStacked = getTeamTotal(team, CAMPS_STACKED);
+        t.totalRunePickups = getTeamTotal(team, RUNE_PICKUPS);
+        t.totalTowersKilled = getTeamTotal(team, TOWERS_KILLED);
+        t.totalRoshansKilled = getTeamTotal(team, ROSHANS_KILLED);
+        t.totalSmokesUsed = getTeamTotal(team, SMOKES_USED);
+        return t;
+    }
+
+    private Player toPlayer(int player) {
+        Player p = new Player();
+        p.key = PLAYER_KEYS[player];
+        p.value = boxedInt(player, VALUE);
+        p.team = boxedInt(player, TEAM);
+        p.name = names[player];
+        p.steamId = hasSteamId(player) ? steamIds[player] : null;
+        p.heroId = boxedInt(player, HERO_ID);
+        p.heroVariant = boxedInt(player, HERO_VARIANT);
+        p.level = boxedInt(player, LEVEL);
+        p.xp = boxedInt(player, XP);
+        p.networth = boxedInt(player, NETWORTH);
+        p.totalGold = boxedInt(player, TOTAL_GOLD);
+        p.currentGold = boxedInt(player, CURRENT_GOLD);
+        p.lifeState = boxedInt(player, LIFE_STATE);
+        p.respawnSeconds = boxedInt(player, RESPAWN_SECONDS);
+        p.buybackCooldown = boxedFloat(player, BUYBACK_COOLDOWN);
+        p.heroDamage = boxedInt(player, HERO_DAMAGE);
+        p.towerDamage = boxedInt(player, TOWER_DAMAGE);
+        p.damageTakenPreReduction = boxedInt(player, DAMAGE_TAKEN_PRE_REDUCTION);
+        p.damageTakenPostReduction = boxedInt(player, DAMAGE_TAKEN_POST_REDUCTION);
+        p.healing = boxedFloat(player, HEALING);
+        p.kills = boxedInt(player, KILLS);
+        p.deaths = boxedInt(player, DEATHS);
+        p.assists = boxedInt(player, ASSISTS);
+        p.lastHits = boxedInt(player, LAST_HITS);
+        p.denies = boxedInt(player, DENIES);
+        p.teamfightParticipation = boxedFloat(player, TEAMFIGHT_PARTICIPATION);
+        p.obsPlaced = boxedInt(player, OBS_PLACED);
+        p.senPlaced = boxedInt(player, SEN_PLACED);
+        p.x = boxedFloat(player, X);
+        p.y = boxedFloat(player, Y);
+        p.unit = units[player];
+        for (int slot = 0; slot < INVENTORY_SLOTS; slot++) {
+            int i = player * INVENTORY_SLOTS + slot;
+            if (itemIds[i] == null) continue;
+            Item item = new Item();
+            item.id = itemIds[i];
+            item.slot = slot;
+            item.num_charges = itemCharges[i] != 0 ? itemCharges[i] : null;
+            item.num_secondary_charges = itemSecondaryCharges[i] != 0 ? itemSecondaryCharges[i] : null;
+            p.inventory.add(item);
+        }
+        return p;
+    }
+
+    private Integer boxedInt(int player, int field) {
+        return hasInt(player, field) ? getInt(player, field) : null;
+    }
+
+    private Float boxedFloat(int player, int field) {
+        return hasFloat(player, field) ? getFloat(player, field) : null;
+    }
+}
@@ -0,0 +1,147 @@
+package parser;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Admits batch replays to the worker pool by estimated peak memory, so that
+ * --threads can go as high as the machine's RAM allows instead of being
+ * sized for the longest replay.
+ *
+ * The estimate of a replay is a model, not a measurement:
+ *
+ *   BASE_BYTES                 Clarity's class and string tables, the runner
+ *   + input                    the mapped .dem (its pages count towards the
+ *                              process) or the read-ahead buffer of a stream
+ *   + ENTITY_STATE_FRACTION    entity state, which grows with the replay
+ *       x replay size
+ *   + snapshots x SNAPSHOT_BYTES   for the columnar and tensors formats,
+ *                              which keep every snapshot until the end
+ *   + write ring x MATCH_STATE_BYTES
+ *   + inference batch x MATCH_STATE_BYTES   with --model
+ *
+ * with compressed replays counted at COMPRESSION_RATIO times their size and
+ * the replay duration taken from its size at BYTES_PER_SECOND.
+ *
+ * --replay-memory caps a single replay: a plain replay larger than half of
+ * it is streamed instead of mapped, and the asynchronous write ring gets at
+ * most an eighth of it. --memory-budget caps the batch: replays start in
+ * order while the sum of their estimates fits, and one that needs more than
+ * the whole budget runs alone.
+ */
+public class MemoryBudget {
+
+    static final long MB = 1 << 20;
+    static final long BASE_BYTES = 96 * MB;
+    static final double ENTITY_STATE_FRACTION = 0.25;
+    static final int COMPRESSION_RATIO = 4;
+    static final long BYTES_PER_SECOND = 40_000;
+    static final long SNAPSHOT_BYTES = 4096;
+    static final long MATCH_STATE_BYTES = 8192;
+    static final long READ_AHEAD_BYTES = 16 * MB;
+
+    private final long budget;
+    private long used = 0;
+    // replays are admitted in the order they asked
+    private long nextTicket = 0;
+    private long serving = 0;
+    private final Set<Long> abandoned = new HashSet<>();
+
+    public MemoryBudget(long budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("budget must be greater than 0");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Waits until the replay's estimate fits into what's left of the budget
+     * and reserves it; returns the reserved bytes to pass to release().
+     */
+    public long acquire(long estimate) throws InterruptedException {
+        long need = Math.min(estimate, budget);
+        synchronized (this) {
+            long ticket = nextTicket++;
+            try {
+                while (ticket != serving || used + need > budget) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // let the ones behind this ticket through
+                if (ticket == serving) {
+                    advance();
+                } else {
+                    abandoned.add(ticket);
+                }
+                notifyAll();
+                throw e;
+            }
+            used += need;
+            advance();
+            notifyAll();
+        }
+        return need;
+    }
+
+    private void advance() {
+        serving++;
+        while (abandoned.remove(serving)) {
+            serving++;
+        }
+    }
+
+    public synchronized void release(long reserved) {
+        used -= reserved;
+        notifyAll();
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * Estimated peak memory of parsing replayPath with options.
+     */
+    public static long estimate(String replayPath, ParserOptions options) {
+        long fileBytes = new File(replayPath).length();
+        long replayBytes = ReplaySources.isCompressed(replayPath) ? fileBytes * COMPRESSION_RATIO : fileBytes;
+
+        long bytes = BASE_BYTES + (long) (replayBytes * ENTITY_STATE_FRACTION);
+        bytes += mapsReplay(replayPath, options) ? fileBytes : READ_AHEAD_BYTES;
+        if (options.format == OutputFormat.COLUMNAR || options.format == OutputFormat.TENSORS) {
+            long seconds = replayBytes / BYTES_PER_SECOND;
+            int interval = options.activeIntervalTicks > 0 ? options.activeIntervalTicks : options.samplingIntervalTicks();
+            long snapshots = options.sampleTicks != null
+                ? options.sampleTicks.length
+                : seconds * ReplayParser.TICK_RATE / interval;
+            bytes += snapshots * SNAPSHOT_BYTES;
+        }
+        bytes += writeBuffer(options) * MATCH_STATE_BYTES;
+        if (options.model != null) {
+            bytes += options.inferenceBatch * MATCH_STATE_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether a plain replay is memory mapped rather than streamed.
+     */
+    public static boolean mapsReplay(String replayPath, ParserOptions options) {
+        if (ReplaySources.isCompressed(replayPath)) {
+            return false;
+        }
+        return options.replayMemory == 0 || new File(replayPath).length() <= options.replayMemory / 2;
+    }
+
+    /**
+     * Slots of the asynchronous write ring, --write-buffer capped by --replay-memory.
+     */
+    public static int writeBuffer(ParserOptions options) {
+        if (options.replayMemory == 0 || options.writeBuffer == 0) {
+            return options.writeBuffer;
+        }
+        long slots = options.replayMemory / 8 / MATCH_STATE_BYTES;
+        return (int) Math.max(1, Math.min(options.writeBuffer, slots));
+    }
+}
@@ -0,0 +1,115 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Item, hero unit and building names to compact int codes, shared by every
+ * replay of a batch and kept across runs in names.json:
+ *
+ *   {"names": ["item_blink", "CDOTA_Unit_Hero_Axe", ...]}   code = index
+ *
+ * Codes are handed out on first use and never change, so the file only ever
+ * grows and the int-coded name columns of the columnar and binary formats
+ * mean the same in every output written with it. Player names are specific
+ * to a match and stay in the per-file dictionaries.
+ *
+ * Thread-safe; the sinks keep their own cache in front of it.
+ */
+public class NameDictionary {
+
+    public static final String FILE_NAME = "names.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int saved = 0;
+
+    /**
+     * Reads a dictionary written by save(); a missing file is an empty dictionary.
+     */
+    public static NameDictionary load(File file) throws IOException {
+        NameDictionary dictionary = new NameDictionary();
+        if (file.isFile()) {
+            JsonNode names = MAPPER.readTree(file).get("names");
+            if (names == null || !names.isArray()) {
+                throw new IOException("No names array in " + file);
+            }
+            for (JsonNode name : names) {
+                dictionary.code(name.textValue());
+            }
+            dictionary.saved = dictionary.names.size();
+        }
+        return dictionary;
+    }
+
+    public synchronized int code(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    public synchronized String name(int code) {
+        return names.get(code);
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * The names with codes 0 to size - 1.
+     */
+    public synchronized List<String> names(int size) {
+        return Collections.unmodifiableList(new ArrayList<>(names.subList(0, size)));
+    }
+
+    /**
+     * Makes prefix the first names of this dictionary, adding the ones it
+     * doesn't have yet; returns false, changing nothing, if a code already
+     * stands for another name.
+     */
+    public synchronized boolean extend(List<String> prefix) {
+        for (int i = 0; i < Math.min(prefix.size(), names.size()); i++) {
+            if (!names.get(i).equals(prefix.get(i))) {
+                return false;
+            }
+        }
+        for (int i = names.size(); i < prefix.size(); i++) {
+            code(prefix.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Writes the dictionary if it got new names since it was loaded or last
+     * saved; replaces the file atomically.
+     */
+    public synchronized void save(File file) throws IOException {
+        if (names.size() == saved && file.isFile()) {
+            return;
+        }
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("names", names);
+        File tmp = new File(file.getPath() + ".tmp");
+        MAPPER.writeValue(tmp, root);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        saved = names.size();
+    }
+}
@@ -0,0 +1,113 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes one JSON line per snapshot:
+ *
+ *   {"matchTime":600,"tick":27000,"dire":{...},"radiant":{...}}
+ *
+ * with the teams in the JSON snapshot format. Used to stream snapshots to a
+ * consumer while the replay is still being parsed: connect() opens a TCP
+ * connection to a listening consumer and every line is flushed as soon as
+ * it is written. Writes block while the consumer's socket buffer is full,
+ * so a slow consumer slows the parser down instead of piling up snapshots.
+ */
+public class NdjsonSnapshotSink implements SnapshotSink {
+
+    public static final String TCP_SCHEME = "tcp://";
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final CountingOutputStream out;
+    private final JsonGenerator gen;
+    private final SnapshotWriter writer;
+    private final boolean flushEverySnapshot;
+
+    public NdjsonSnapshotSink(OutputStream out, boolean flushEverySnapshot) throws IOException {
+        this.out = new CountingOutputStream(out);
+        this.flushEverySnapshot = flushEverySnapshot;
+        gen = new JsonFactory().createGenerator(this.out, JsonEncoding.UTF8);
+        gen.setRootValueSeparator(null);
+        writer = new SnapshotWriter(gen);
+    }
+
+    public static boolean isStreamAddress(String outputPath) {
+        return outputPath.startsWith(TCP_SCHEME);
+    }
+
+    /**
+     * Connects to a consumer listening on "tcp://host:port".
+     */
+    public static NdjsonSnapshotSink connect(String address) throws IOException {
+        String hostPort = address.substring(TCP_SCHEME.length());
+        int colon = hostPort.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Stream address must be tcp://host:port, got " + address);
+        }
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1))),
+                CONNECT_TIMEOUT_MILLIS);
+            return new NdjsonSnapshotSink(new BufferedOutputStream(socket.getOutputStream(), 1 << 16), true);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName("matchTime");
+        if ((int) matchTime == matchTime) gen.writeNumber((int) matchTime); else gen.writeNumber(matchTime);
+        gen.writeNumberField("tick", state.tick);
+        writer.writeTeams(state);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        if (flushEverySnapshot) {
+            gen.flush();
+        }
+    }
+
+    /**
+     * Bytes handed to the underlying stream so far.
+     */
+    public long getBytesWritten() {
+        return out.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        gen.close();
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes little-endian NumPy .npy (format 1.0) files that numpy can open with
+ * np.load(path, mmap_mode="r").
+ */
+public final class NpyWriter {
+
+    private static final int CHUNK = 1 << 16;
+
+    private NpyWriter() {
+    }
+
+    public static void writeInts(File file, int[] data, int length, int... shape) throws IOException {
+        try (OutputStream out = open(file, "<i4", shape)) {
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < length; i += CHUNK) {
+                int n = Math.min(CHUNK, length - i);
+                buf.clear();
+                buf.asIntBuffer().put(data, i, n);
+                out.write(buf.array(), 0, n * 4);
+            }
+        }
+    }
+
+    public static void writeFloats(File file, float[] data, int length, int... shape) throws IOException {
+        try (OutputStream out = open(file, "<f4", shape)) {
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < length; i += CHUNK) {
+                int n = Math.min(CHUNK, length - i);
+                buf.clear();
+                buf.asFloatBuffer().put(data, i, n);
+                out.write(buf.array(), 0, n * 4);
+            }
+        }
+    }
+
+    public static void writeLongs(File file, long[] data, int length, int... shape) throws IOException {
+        try (OutputStream out = open(file, "<i8", shape)) {
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < length; i += CHUNK) {
+                int n = Math.min(CHUNK, length - i);
+                buf.clear();
+                buf.asLongBuffer().put(data, i, n);
+                out.write(buf.array(), 0, n * 8);
+            }
+        }
+    }
+
+    private static OutputStream open(File file, String descr, int[] shape) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), CHUNK);
+        out.write(header(descr, shape));
+        return out;
+    }
+
+    static byte[] header(String descr, int[] shape) {
+        StringBuilder dims = new StringBuilder("(");
+        for (int i = 0; i < shape.length; i++) {
+            if (i > 0) dims.append(", ");
+            dims.append(shape[i]);
+        }
+        if (shape.length == 1) dims.append(',');
+        dims.append(')');
+
+        StringBuilder dict = new StringBuilder()
+            .append("{'descr': '").append(descr)
+            .append("', 'fortran_order': False, 'shape': ").append(dims).append(", }");
+        // magic (6) + version (2) + header length (2) + dict, padded to 64 bytes and ending in \n
+        int unpadded = 10 + dict.length() + 1;
+        int padding = (64 - unpadded % 64) % 64;
+        for (int i = 0; i < padding; i++) dict.append(' ');
+        dict.append('\n');
+
+        byte[] text = dict.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(10 + text.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x93).put("NUMPY".getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 1).put((byte) 0);
+        header.putShort((short) text.length);
+        header.put(text);
+        return header.array();
+    }
+}
@@ -0,0 +1,48 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public enum OutputFormat {
+    JSON(".json"),
+    NDJSON(".ndjson"),
+    BINARY(".bin"),
+    COLUMNAR(".columnar"),
+    DELTA(".delta"),
+    TENSORS(".tensors");
+
+    public final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public SnapshotSink createSink(String outputPath, ParserOptions options) throws IOException {
+        switch (this) {
+            case NDJSON:
+                return new NdjsonSnapshotSink(new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 16), false);
+            case BINARY:
+                return new BinarySnapshotSink(outputPath, options.names);
+            case COLUMNAR:
+                return new ColumnarSnapshotSink(outputPath, options.names);
+            case DELTA:
+                return new DeltaSnapshotSink(outputPath, options.keyframeInterval);
+            case TENSORS:
+                return new TensorSnapshotSink(outputPath, options.vocabulary);
+            default:
+                return new JsonSnapshotSink(outputPath);
+        }
+    }
+
+    /**
+     * Whether the format writes names as NameDictionary codes.
+     */
+    public boolean usesNameDictionary() {
+        return this == BINARY || this == COLUMNAR;
+    }
+
+    public static OutputFormat fromName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,83 @@
+package parser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Where the time of one replay parse went, plus what it produced.
+ *
+ * The phases don't overlap: writingNanos is spent in the SnapshotSink,
+ * extractionNanos in onTickStart reading entities into the MatchState, and
+ * decodeNanos is the rest of the runner's time, i.e. Clarity decoding the
+ * replay and running the other listeners. With the asynchronous writer
+ * (AsyncSnapshotSink), writingNanos is what the tick thread spent handing
+ * snapshots over, including waits for a free slot, plus waiting for the
+ * writer to finish. allocatedBytes only counts the parsing thread;
+ * decompressing a .bz2/.zst replay happens on its own thread.
+ *
+ * Public fields so the batch summary can serialize it as is.
+ */
+public class ParseMetrics {
+
+    public String replay;
+    public long wallNanos;
+    public long decodeNanos;
+    public long extractionNanos;
+    public long writingNanos;
+    public long ticks;
+    public long snapshotsWritten;
+    public long entitiesScanned;
+    public long inputBytes;
+    public long bytesWritten;
+    /** 1 when the output was copied from the ReplayCache instead of parsed */
+    public long cacheHits;
+    /** -1 when the JVM can't measure thread allocations */
+    public long allocatedBytes = -1;
+
+    /**
+     * Allocation rate of the parsing thread in MB/s, or -1 when unknown.
+     */
+    public double allocationRate() {
+        if (allocatedBytes < 0 || wallNanos <= 0) {
+            return -1;
+        }
+        return allocatedBytes / 1e6 / (wallNanos / 1e9);
+    }
+
+    public void add(ParseMetrics m) {
+        wallNanos += m.wallNanos;
+        decodeNanos += m.decodeNanos;
+        extractionNanos += m.extractionNanos;
+        writingNanos += m.writingNanos;
+        ticks += m.ticks;
+        snapshotsWritten += m.snapshotsWritten;
+        entitiesScanned += m.entitiesScanned;
+        inputBytes += m.inputBytes;
+        bytesWritten += m.bytesWritten;
+        cacheHits += m.cacheHits;
+        if (m.allocatedBytes >= 0) {
+            allocatedBytes = Math.max(allocatedBytes, 0) + m.allocatedBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Phases: decode %d ms, extraction %d ms, writing %d ms; %d entities scanned, %.1f MB written",
+            decodeNanos / 1000000, extractionNanos / 1000000, writingNanos / 1000000, entitiesScanned, bytesWritten / 1e6)
+            + (allocatedBytes >= 0 ? String.format(", allocated %.1f MB (%.0f MB/s)", allocatedBytes / 1e6, allocationRate()) : "");
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if unsupported.
+     */
+    static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+            if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+                return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,298 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Command line options shared by the single replay and batch entry points.
+ */
+public class ParserOptions {
+    public int processInterval = 30;
+    public int intervalTicks = 0;         // overrides processInterval when set
+    public int activeIntervalTicks = 0;   // > 0 enables adaptive sampling
+    public int[] sampleTicks = null;      // explicit tick list
+    public int windowFrom = -1;           // match time window in seconds, -1 = whole replay
+    public int windowTo = -1;
+    public OutputFormat format = OutputFormat.JSON;
+    public int keyframeInterval = DeltaSnapshotSink.DEFAULT_KEYFRAME_INTERVAL;
+    public int writeBuffer = AsyncSnapshotSink.DEFAULT_CAPACITY;  // snapshots queued for the writer thread, 0 = write on the tick thread
+    public ExtractionProfile profile = ExtractionProfile.FULL;
+    public boolean mapFeatures = false;   // add the MapIndex region features of each team
+    public boolean recentStats = false;   // add combat log activity of the last 30/60/120 s, see CombatLogAggregator
+    public NameDictionary names = null;   // unit/item/building name codes shared across replays and runs
+    public File namesFile = null;         // where names is loaded from and saved to
+    public FeatureVocabulary vocabulary = null;  // tensors format and --model: hero/item embedding indices
+    public WinProbabilityModel model = null;     // annotates snapshots with the radiant win probability
+    public int inferenceBatch = InferenceSnapshotSink.DEFAULT_BATCH;  // windows per model run
+    public int inferenceThreads = 1;      // ONNX Runtime intra-op threads per run
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public long memoryBudget = 0;         // batch: bytes all running replays may use, 0 = no limit, see MemoryBudget
+    public long replayMemory = 0;         // bytes one replay may use, 0 = no limit
+    public ReplayCache cache = null;      // outputs of replays parsed before, by content, see ReplayCache
+    public long cacheSize = ReplayCache.DEFAULT_MAX_BYTES;
+    public boolean live = false;          // follow a replay that is still being written
+    public int liveTimeoutSeconds = 60;   // live: the replay ended once it stopped growing this long
+    public boolean resume = true;         // batch: skip replays the manifest has as up to date
+
+    public static ParserOptions fromArgs(String[] args, int from) {
+        ParserOptions options = new ParserOptions();
+        File cacheDir = null;
+        File modelFile = null;
+        for (int i = from; i < args.length; i++) {
+            switch (args[i]) {
+                case "--interval":
+                    options.processInterval = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--interval-ticks":
+                    options.intervalTicks = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--adaptive":
+                    options.activeIntervalTicks = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--ticks":
+                    try {
+                        options.sampleTicks = TickListScheduler.parseTicks(value(args, ++i));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Can't read tick list " + args[i], e);
+                    }
+                    break;
+                case "--window":
+                    String[] window = value(args, ++i).split("-", 2);
+                    if (window.length != 2) {
+                        throw new IllegalArgumentException("--window expects FROM-TO, e.g. 20:00-30:00");
+                    }
+                    options.windowFrom = parseSeconds(window[0]);
+                    options.windowTo = parseSeconds(window[1]);
+                    break;
+                case "--format":
+                    options.format = OutputFormat.fromName(value(args, ++i));
+                    break;
+                case "--keyframe-interval":
+                    options.keyframeInterval = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--write-buffer":
+                    options.writeBuffer = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--profile":
+                    try {
+                        options.profile = ExtractionProfile.load(value(args, ++i));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Can't read extraction profile " + args[i], e);
+                    }
+                    break;
+                case "--map-features":
+                    options.mapFeatures = true;
+                    break;
+                case "--recent-stats":
+                    options.recentStats = true;
+                    break;
+                case "--names":
+                    options.namesFile = new File(value(args, ++i));
+                    break;
+                case "--vocab":
+                    try {
+                        options.vocabulary = FeatureVocabulary.load(new File(value(args, ++i)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Can't read vocabulary in " + args[i], e);
+                    }
+                    break;
+                case "--model":
+                    modelFile = new File(value(args, ++i));
+                    break;
+                case "--inference-batch":
+                    options.inferenceBatch = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--inference-threads":
+                    options.inferenceThreads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--live":
+                    options.live = true;
+                    break;
+                case "--live-timeout":
+                    options.liveTimeoutSeconds = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--memory-budget":
+                    options.memoryBudget = parseSize(value(args, ++i));
+                    break;
+                case "--replay-memory":
+                    options.replayMemory = parseSize(value(args, ++i));
+                    break;
+                case "--cache":
+                    cacheDir = new File(value(args, ++i));
+                    break;
+                case "--cache-size":
+                    options.cacheSize = parseSize(value(args, ++i));
+                    break;
+                case "--no-resume":
+                    options.resume = false;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (options.processInterval < 1) {
+            throw new IllegalArgumentException("processInterval must be greater than 0");
+        }
+        if (options.intervalTicks < 0 || options.activeIntervalTicks < 0) {
+            throw new IllegalArgumentException("Tick intervals must be greater than 0");
+        }
+        if (options.activeIntervalTicks > options.samplingIntervalTicks()) {
+            throw new IllegalArgumentException("--adaptive interval must not be longer than the quiet interval");
+        }
+        if (options.sampleTicks != null && options.activeIntervalTicks > 0) {
+            throw new IllegalArgumentException("--ticks and --adaptive can't be combined");
+        }
+        if (options.hasWindow() && (options.windowFrom < 0 || options.windowTo < options.windowFrom)) {
+            throw new IllegalArgumentException("--window must be FROM-TO with 0 <= FROM <= TO");
+        }
+        if (options.keyframeInterval < 1) {
+            throw new IllegalArgumentException("keyframeInterval must be greater than 0");
+        }
+        if (options.writeBuffer < 0) {
+            throw new IllegalArgumentException("--write-buffer must not be negative");
+        }
+        if (options.mapFeatures && !(options.profile.wards() && options.profile.buildings()
+                && options.profile.floatField(MatchState.X) && options.profile.floatField(MatchState.Y))) {
+            throw new IllegalArgumentException("--map-features needs a profile with wards, buildings and the hero x/y fields");
+        }
+        if (options.format == OutputFormat.TENSORS && options.vocabulary == null) {
+            throw new IllegalArgumentException("--format tensors needs --vocab DIR with " + FeatureVocabulary.HERO_FILE + " and " + FeatureVocabulary.ITEM_FILE);
+        }
+        if (modelFile != null && options.vocabulary == null) {
+            throw new IllegalArgumentException("--model needs --vocab DIR with the vocabulary it was trained with");
+        }
+        if (options.inferenceBatch < 1 || options.inferenceThreads < 1) {
+            throw new IllegalArgumentException("--inference-batch and --inference-threads must be greater than 0");
+        }
+        if (modelFile != null && (options.activeIntervalTicks > 0 || options.sampleTicks != null)) {
+            throw new IllegalArgumentException("--model scores windows of evenly spaced snapshots, it can't be combined with --adaptive or --ticks");
+        }
+        if (options.live && options.hasWindow()) {
+            throw new IllegalArgumentException("--live can't seek, so it can't be combined with --window");
+        }
+        if (options.liveTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("--live-timeout must be greater than 0");
+        }
+        if (options.namesFile != null) {
+            options.loadNames(options.namesFile);
+        }
+        if (options.memoryBudget < 0 || options.replayMemory < 0) {
+            throw new IllegalArgumentException("Memory budgets must not be negative");
+        }
+        if (options.cacheSize < 1) {
+            throw new IllegalArgumentException("--cache-size must be greater than 0");
+        }
+        if (cacheDir != null) {
+            try {
+                options.cache = new ReplayCache(cacheDir, options.cacheSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't open replay cache " + cacheDir, e);
+            }
+        }
+        if (options.threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than 0");
+        }
+        // last, so no later rejection leaves an open session behind
+        if (modelFile != null) {
+            try {
+                options.model = WinProbabilityModel.load(modelFile, options.inferenceThreads);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't load model " + modelFile, e);
+            }
+            checkSliceInterval(options);
+        }
+        return options;
+    }
+
+    /**
+     * Loads the name dictionary that outputs share and saveNames() updates.
+     */
+    public void loadNames(File file) {
+        try {
+            names = NameDictionary.load(file);
+            namesFile = file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read name dictionary " + file, e);
+        }
+    }
+
+    public void saveNames() throws IOException {
+        if (names != null) {
+            names.save(namesFile);
+        }
+    }
+
+    public boolean hasWindow() {
+        return windowTo >= 0;
+    }
+
+    public int samplingIntervalTicks() {
+        return intervalTicks > 0 ? intervalTicks : processInterval * ReplayParser.TICK_RATE;
+    }
+
+    /**
+     * The model's windows must span the game time it was trained on.
+     */
+    static void checkSliceInterval(ParserOptions options) {
+        int sliceSeconds = options.model.sliceSeconds();
+        if (options.samplingIntervalTicks() != sliceSeconds * ReplayParser.TICK_RATE) {
+            try {
+                options.model.close();
+            } catch (IOException e) {
+                // the options are rejected either way
+            }
+            options.model = null;
+            throw new IllegalArgumentException("The model was trained on snapshots " + sliceSeconds
+                + " s apart, sample with --interval " + sliceSeconds + " to score them");
+        }
+    }
+
+    /**
+     * A fresh scheduler for one replay.
+     */
+    public SamplingScheduler createScheduler() {
+        if (sampleTicks != null) {
+            return new TickListScheduler(sampleTicks);
+        }
+        if (activeIntervalTicks > 0) {
+            return new AdaptiveScheduler(samplingIntervalTicks(), activeIntervalTicks);
+        }
+        return new FixedIntervalScheduler(samplingIntervalTicks());
+    }
+
+    /**
+     * "1200" or "20:00" to seconds.
+     */
+    static int parseSeconds(String time) {
+        int colon = time.indexOf(':');
+        if (colon < 0) {
+            return Integer.parseInt(time.trim());
+        }
+        return Integer.parseInt(time.substring(0, colon).trim()) * 60 + Integer.parseInt(time.substring(colon + 1).trim());
+    }
+
+    /**
+     * A size like "512m", "8g" or a plain byte count.
+     */
+    static long parseSize(String size) {
+        String s = size.trim().toLowerCase();
+        long unit = 1;
+        char last = s.isEmpty() ? ' ' : s.charAt(s.length() - 1);
+        if (last == 'k' || last == 'm' || last == 'g') {
+            unit = last == 'k' ? 1L << 10 : last == 'm' ? 1L << 20 : 1L << 30;
+            s = s.substring(0, s.length() - 1);
+        }
+        return Long.parseLong(s) * unit;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
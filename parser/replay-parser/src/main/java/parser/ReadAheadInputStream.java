@@ -0,0 +1,124 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads an upstream InputStream on a background thread into a bounded queue of
+ * chunks, so that expensive upstream work (bz2/zstd decompression) overlaps
+ * with whoever consumes this stream.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] EOF = new byte[0];
+
+    private final InputStream upstream;
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread reader;
+    private volatile Throwable failure;
+
+    private byte[] current;
+    private int pos;
+    private long bytesRead;
+    private boolean closed;
+
+    public ReadAheadInputStream(InputStream upstream, int chunkSize, int maxChunks, String name) {
+        this.upstream = upstream;
+        this.chunks = new ArrayBlockingQueue<>(maxChunks);
+        this.reader = new Thread(() -> pump(chunkSize), name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void pump(int chunkSize) {
+        try {
+            while (true) {
+                byte[] chunk = new byte[chunkSize];
+                int filled = 0;
+                int n;
+                while (filled < chunkSize && (n = upstream.read(chunk, filled, chunkSize - filled)) != -1) {
+                    filled += n;
+                }
+                if (filled > 0) {
+                    chunks.put(filled == chunkSize ? chunk : Arrays.copyOf(chunk, filled));
+                }
+                if (filled < chunkSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (Throwable t) {
+            failure = t;
+        }
+        try {
+            chunks.put(EOF);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (current == EOF) {
+            return false;
+        }
+        if (current != null && pos < current.length) {
+            return true;
+        }
+        try {
+            current = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+        }
+        pos = 0;
+        if (current == EOF) {
+            if (failure != null) {
+                throw new IOException("Failed to read replay stream", failure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        bytesRead++;
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        bytesRead += n;
+        return n;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        upstream.close();
+    }
+}
@@ -0,0 +1,254 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Content-addressed store of parser outputs, so a match that was downloaded
+ * again (or under another name, or compressed differently) is copied from
+ * the cache instead of parsed:
+ *
+ *   <dir>/<key>/output       the output file or directory
+ *   <dir>/<key>/entry.json   {"key":"...","bytes":123,"names":[...]}
+ *
+ * The key hashes the first FINGERPRINT_BYTES of the decompressed replay,
+ * i.e. its header and first packets, which differ between any two matches
+ * (the header holds the offset of the file info at the end of the replay),
+ * together with the parser signature of BatchManifest. Unlike the batch
+ * manifest it doesn't care where the replay lives.
+ *
+ * The cache holds at most maxBytes of outputs and evicts the least recently
+ * used entries beyond that; the modification time of an entry directory is
+ * its last use, so the order survives restarts.
+ *
+ * Binary and columnar outputs written with a shared NameDictionary remember
+ * the dictionary they were written with, and are only restored into one
+ * that agrees with it.
+ *
+ * Thread-safe within one process; entries are published by renaming a
+ * finished temp directory, so a crash never leaves a partial entry behind.
+ */
+public class ReplayCache {
+
+    public static final long DEFAULT_MAX_BYTES = 10L << 30;
+    static final int FINGERPRINT_BYTES = 1 << 20;
+
+    private static final String ENTRY_FILE = "entry.json";
+    private static final String OUTPUT = "output";
+    private static final String TEMP_PREFIX = "tmp-";
+
+    public static class Entry {
+        public String key;
+        public long bytes;
+        /** the shared name dictionary the output was written with, null if none */
+        public List<String> names;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final File dir;
+    private final long maxBytes;
+    // least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    public ReplayCache(File dir, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create cache directory " + dir);
+        }
+        load();
+    }
+
+    private void load() {
+        File[] children = dir.listFiles(File::isDirectory);
+        if (children == null) {
+            return;
+        }
+        List<File> found = new ArrayList<>();
+        for (File child : children) {
+            if (child.getName().startsWith(TEMP_PREFIX) || !new File(child, ENTRY_FILE).isFile()) {
+                // left behind by a store that didn't finish
+                ReplayParser.deleteRecursively(child);
+            } else {
+                found.add(child);
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File child : found) {
+            try {
+                Entry e = MAPPER.readValue(new File(child, ENTRY_FILE), Entry.class);
+                entries.put(e.key, e);
+                totalBytes += e.bytes;
+            } catch (IOException e) {
+                System.err.println("Dropping unreadable cache entry " + child + ": " + e);
+                ReplayParser.deleteRecursively(child);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * The cache key of parsing replayPath into an output of parserSignature.
+     */
+    public static String key(String replayPath, String parserSignature) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = ReplaySources.openContent(replayPath)) {
+            int remaining = FINGERPRINT_BYTES;
+            int n;
+            while (remaining > 0 && (n = in.read(buf, 0, Math.min(buf.length, remaining))) > 0) {
+                digest.update(buf, 0, n);
+                remaining -= n;
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(parserSignature.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * BatchManifest.signature plus whether name codes come from a shared
+     * dictionary, which changes binary and columnar outputs.
+     */
+    public static String signature(ParserOptions options) {
+        String signature = BatchManifest.signature(options);
+        return options.names != null && options.format.usesNameDictionary() ? signature + " names=shared" : signature;
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Copies the cached output of key to output and returns true, or returns
+     * false if there's none or it was written with a dictionary that doesn't
+     * agree with names.
+     */
+    public synchronized boolean restore(String key, File output, NameDictionary names) throws IOException {
+        Entry e = entries.get(key);
+        if (e == null) {
+            return false;
+        }
+        if (e.names != null && (names == null || !names.extend(e.names))) {
+            return false;
+        }
+        File entryDir = new File(dir, key);
+        File partial = new File(output.getPath() + ".partial");
+        ReplayParser.deleteRecursively(partial);
+        try {
+            copy(new File(entryDir, OUTPUT), partial);
+        } catch (IOException ex) {
+            ReplayParser.deleteRecursively(partial);
+            System.err.println("Dropping broken cache entry " + entryDir + ": " + ex);
+            remove(key);
+            return false;
+        }
+        ReplayParser.moveIntoPlace(partial, output);
+        entryDir.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Adds a finished output under key, evicting the least recently used
+     * entries beyond the cache size. Outputs larger than the whole cache
+     * aren't kept.
+     */
+    public void store(String key, File output, NameDictionary names) throws IOException {
+        long bytes = ReplaySources.diskUsage(output);
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry e = new Entry();
+        e.key = key;
+        e.bytes = bytes;
+        e.names = names != null ? names.names(names.size()) : null;
+
+        // copied outside the lock, so other replays can use the cache meanwhile
+        File tmp = Files.createTempDirectory(dir.toPath(), TEMP_PREFIX).toFile();
+        try {
+            copy(output, new File(tmp, OUTPUT));
+            MAPPER.writeValue(new File(tmp, ENTRY_FILE), e);
+            synchronized (this) {
+                if (entries.containsKey(key)) {
+                    return;
+                }
+                Files.move(tmp.toPath(), new File(dir, key).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                entries.put(key, e);
+                totalBytes += bytes;
+                evict();
+            }
+        } finally {
+            ReplayParser.deleteRecursively(tmp);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue().bytes;
+            ReplayParser.deleteRecursively(new File(dir, eldest.getKey()));
+        }
+    }
+
+    private void remove(String key) {
+        Entry e = entries.remove(key);
+        if (e != null) {
+            totalBytes -= e.bytes;
+            ReplayParser.deleteRecursively(new File(dir, key));
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        if (!from.isDirectory()) {
+            Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        if (!to.isDirectory() && !to.mkdirs()) {
+            throw new IOException("Can't create " + to);
+        }
+        File[] children = from.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + from);
+        }
+        for (File child : children) {
+            copy(child, new File(to, child.getName()));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package parser;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed once per parsed replay, with the same numbers as
+ * ParseMetrics. Record with -XX:StartFlightRecording and look for
+ * parser.ReplayParse next to the CPU and allocation samples.
+ */
+@Name("parser.ReplayParse")
+@Label("Replay Parse")
+@Category({"Replay Parser"})
+@Description("One replay parsed into snapshots")
+class ReplayParseEvent extends Event {
+
+    @Label("Replay")
+    String replay;
+
+    @Label("Decode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long decodeNanos;
+
+    @Label("Extraction Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long extractionNanos;
+
+    @Label("Writing Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long writingNanos;
+
+    @Label("Ticks")
+    long ticks;
+
+    @Label("Snapshots Written")
+    long snapshotsWritten;
+
+    @Label("Entities Scanned")
+    long entitiesScanned;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
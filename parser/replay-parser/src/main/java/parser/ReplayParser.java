@@ -1,33 +1,32 @@
 package parser;
 
 import skadistats.clarity.processor.runner.Context;
+import skadistats.clarity.processor.runner.ControllableRunner;
 import skadistats.clarity.processor.runner.SimpleRunner;
 import skadistats.clarity.processor.stringtables.StringTables;
 import skadistats.clarity.processor.stringtables.UsesStringTable;
 import skadistats.clarity.io.Util;
 import skadistats.clarity.model.Entity;
-import skadistats.clarity.model.FieldPath;
 import skadistats.clarity.model.StringTable;
 import skadistats.clarity.processor.entities.Entities;
 import skadistats.clarity.processor.entities.UsesEntities;
 import skadistats.clarity.processor.reader.OnTickStart;
-import skadistats.clarity.source.MappedFileSource;
+import skadistats.clarity.source.Source;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.fasterxml.jackson.core.JsonEncoding;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
 public class ReplayParser {
  
@@ -182,71 +181,332 @@ public class ReplayParser {
         public Integer abilityLevel;
     }
     
-    private class UnknownItemFoundException extends RuntimeException {
-        public UnknownItemFoundException(String message) {
-            super(message);
-        }
-    }
-
     private class UnknownAbilityFoundException extends RuntimeException {
         public UnknownAbilityFoundException(String message) {
             super(message);
         }
     }
 
-    private static final int TICK_RATE = 30;
+    static final int TICK_RATE = 30;
+    static final String VERSION = ReplayParser.class.getPackage().getImplementationVersion() != null
+        ? ReplayParser.class.getPackage().getImplementationVersion() : "dev";
+    static final String SAMPLING_USAGE =
+        "Sampling: --interval SECONDS (default 30) | --interval-ticks N, optionally with --adaptive ACTIVE_TICKS\n" +
+        "          | --ticks T1,T2,...|@ticks.txt\n" +
+        "          [--window FROM-TO]  only the match time window, in seconds or m:ss (e.g. 20:00-30:00)";
     private int serverTick = -1;
+    private int ticksProcessed = 0;
     private int startTime = -1;
     private Integer time = 0;
     private int matchTime = -1;
+    private float exactMatchTime = -1;
+
+    // window mode: while seeking, ticks only report where they are in the game
+    private static final int SEEK_PRECISION_TICKS = 30 * TICK_RATE;
+    private static final int BEFORE_GAME = Integer.MIN_VALUE;
+    private static final int AFTER_GAME = Integer.MAX_VALUE;
+    private boolean seeking = false;
+    private int probedMatchTime = BEFORE_GAME;
+    private boolean pastWindow = false;
     private boolean init = false;
     private int numPlayers = 10;
     private int[] validIndices = new int[numPlayers];
     private HashMap<Integer, Integer> slot_to_playerslot = new HashMap<>();
     private HashMap<Long, Integer> steamid_to_playerslot = new HashMap<>();
 
-    private List<Player> playersList = new ArrayList<>();
-    private Team radiantTeam = new Team(2);
-    private Team direTeam = new Team(3);
+    private MatchState state = new MatchState();
+    private ExtractionProfile profile;
 
     private String replayPath;
     private String outputPath;
-    private int processInterval;
-
-    private ObjectMapper mapper;
-    private JsonGenerator jsonGen;
+    private ParserOptions options;
+    private SamplingScheduler scheduler;
+
+    private SnapshotSink sink;
+
+    private FieldPathCache fieldPaths = new FieldPathCache();
+    private InventoryReader inventory;
+    private MapIndex mapIndex;
+    private CombatLogAggregator combatLog;
+    private String cacheKey;
+    private int snapshotsWritten = 0;
+    private long extractionNanos = 0;
+    private long writingNanos = 0;
+    private long entitiesScanned = 0;
+    private final ParseMetrics metrics = new ParseMetrics();
 
     public ReplayParser(String replayPath, int processInterval, String outputPath) {
+        this(replayPath, processInterval, outputPath, OutputFormat.JSON);
+    }
+
+    public ReplayParser(String replayPath, int processInterval, String outputPath, OutputFormat format) {
+        this(replayPath, outputPath, defaultOptions(processInterval, format));
+    }
+
+    public ReplayParser(String replayPath, String outputPath, ParserOptions options) {
+        this.replayPath = replayPath;
+        this.outputPath = outputPath;
+        this.options = options;
+        this.scheduler = options.createScheduler();
+        this.profile = options.profile;
+        this.mapIndex = options.mapFeatures ? new MapIndex() : null;
+    }
+
+    private static ParserOptions defaultOptions(int processInterval, OutputFormat format) {
         if (processInterval < 1) {
             throw new IllegalArgumentException("processInterval must be greater than 0");
         }
-        this.replayPath = replayPath;
-        this.processInterval = processInterval;
-        this.outputPath = outputPath;
-    }    
+        ParserOptions options = new ParserOptions();
+        options.processInterval = processInterval;
+        options.format = format;
+        return options;
+    }
     
+    /**
+     * Whether options.cache already holds the output of this replay.
+     */
+    public boolean isCached() throws IOException {
+        String key = cacheKey();
+        return key != null && options.cache.contains(key);
+    }
+
+    private String cacheKey() throws IOException {
+        // live replays change while they're parsed, streams have nothing to copy
+        if (options.cache == null || options.live || NdjsonSnapshotSink.isStreamAddress(outputPath)) {
+            return null;
+        }
+        if (cacheKey == null) {
+            cacheKey = ReplayCache.key(replayPath, ReplayCache.signature(options));
+        }
+        return cacheKey;
+    }
+
     public void parse() throws IOException {
         System.out.println("Starting to parse replay: " + replayPath);
-        MappedFileSource source = new MappedFileSource(replayPath);
-        long tStart = System.currentTimeMillis();
-    
-        mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
-        jsonGen = mapper.getFactory().createGenerator(new File(outputPath), JsonEncoding.UTF8);
-        jsonGen.writeStartObject();
+        long tStart = System.nanoTime();
+        String key = cacheKey();
+        if (key != null && options.cache.restore(key, new File(outputPath), options.names)) {
+            metrics.replay = replayPath;
+            metrics.wallNanos = System.nanoTime() - tStart;
+            metrics.inputBytes = new File(replayPath).length();
+            metrics.bytesWritten = ReplaySources.diskUsage(new File(outputPath));
+            metrics.cacheHits = 1;
+            System.out.println(String.format("Copied %.1f MB from the replay cache in %d ms",
+                metrics.bytesWritten / 1e6, metrics.wallNanos / 1000000));
+            return;
+        }
+        long allocatedBefore = ParseMetrics.threadAllocatedBytes();
+        ReadAheadInputStream decompressed = null;
+        Source source;
+        if (options.live) {
+            // follows a replay that is still being written
+            source = ReplaySources.openLive(replayPath, options.liveTimeoutSeconds);
+        } else if (ReplaySources.isCompressed(replayPath)) {
+            decompressed = ReplaySources.openDecompressed(replayPath);
+            source = ReplaySources.open(decompressed);
+        } else if (!MemoryBudget.mapsReplay(replayPath, options)) {
+            // larger than --replay-memory allows to map
+            decompressed = ReplaySources.openStreamed(replayPath);
+            source = ReplaySources.open(decompressed);
+        } else {
+            source = ReplaySources.open(replayPath);
+        }
     
+        // written next to the output and renamed into place once complete, so
+        // an interrupted parse never leaves a truncated output behind;
+        // streamed snapshots go straight to the consumer
+        boolean stream = NdjsonSnapshotSink.isStreamAddress(outputPath);
+        File partial = new File(outputPath + ".partial");
+        boolean complete = false;
+        NdjsonSnapshotSink streamSink = null;
         try {
-            SimpleRunner runner = new SimpleRunner(source);
-            runner.runWith(this);
+            if (stream) {
+                sink = streamSink = NdjsonSnapshotSink.connect(outputPath);
+            } else {
+                deleteRecursively(partial);
+                sink = options.format.createSink(partial.getPath(), options);
+            }
+            if (options.model != null) {
+                // a live consumer gets every snapshot as soon as it is scored
+                sink = new InferenceSnapshotSink(sink, options.model, options.vocabulary, stream ? 1 : options.inferenceBatch);
+            }
+            int writeBuffer = MemoryBudget.writeBuffer(options);
+            if (writeBuffer > 0) {
+                sink = new AsyncSnapshotSink(sink, writeBuffer);
+            }
+            inventory = new InventoryReader(fieldPaths);
+            combatLog = options.recentStats ? new CombatLogAggregator(fieldPaths) : null;
+            long tRun = System.nanoTime();
+            try {
+                List<Object> listeners = new ArrayList<>();
+                listeners.add(this);
+                if (profile.buildings()) {
+                    listeners.add(new BuildingTracker(state, fieldPaths));
+                }
+                listeners.add(scheduler);
+                if (combatLog != null) {
+                    listeners.add(combatLog);
+                }
+                Object[] processors = listeners.toArray();
+                if (options.hasWindow() && decompressed == null) {
+                    parseWindow(source, processors);
+                } else {
+                    if (options.hasWindow()) {
+                        System.out.println("Streamed replays can't seek, parsing from the start up to the window");
+                    }
+                    new SimpleRunner(source).runWith(processors);
+                }
+            } finally {
+                long tClose = System.nanoTime();
+                sink.close();
+                writingNanos += System.nanoTime() - tClose;
+            }
+            metrics.decodeNanos = System.nanoTime() - tRun - extractionNanos - writingNanos;
+            complete = true;
         } finally {
-            jsonGen.writeEndObject();
-            jsonGen.close();
+            if (!complete && !stream) {
+                deleteRecursively(partial);
+            }
             source.close();
+            if (decompressed != null) {
+                decompressed.close();
+            }
         }
     
+        long outputBytes;
+        if (stream) {
+            outputBytes = streamSink.getBytesWritten();
+        } else {
+            File output = new File(outputPath);
+            moveIntoPlace(partial, output);
+            outputBytes = ReplaySources.diskUsage(output);
+            if (key != null) {
+                try {
+                    options.cache.store(key, output, options.names);
+                } catch (IOException e) {
+                    System.err.println("Failed to cache the output of " + replayPath + ": " + e);
+                }
+            }
+        }
+
+        long allocatedAfter = ParseMetrics.threadAllocatedBytes();
+        long inputBytes = new File(replayPath).length();
+        metrics.replay = replayPath;
+        metrics.wallNanos = System.nanoTime() - tStart;
+        metrics.extractionNanos = extractionNanos;
+        metrics.writingNanos = writingNanos;
+        metrics.ticks = ticksProcessed;
+        metrics.snapshotsWritten = snapshotsWritten;
+        metrics.entitiesScanned = entitiesScanned + inventory.getItemsRead();
+        metrics.inputBytes = inputBytes;
+        metrics.bytesWritten = outputBytes;
+        metrics.allocatedBytes = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+        commitEvent();
+
         System.out.println("Finished parsing replay.");
-        long tEnd = System.currentTimeMillis();
-        System.out.println("Time taken: " + (tEnd - tStart) + " ms");
+        System.out.println("Time taken: " + metrics.wallNanos / 1000000 + " ms");
+        if (stream) {
+            System.out.println(String.format("Streamed %.1f MB to %s", outputBytes / 1e6, outputPath));
+        } else if (decompressed != null && ReplaySources.isCompressed(replayPath)) {
+            System.out.println(String.format("Disk: input %.1f MB (%.1f MB decompressed in memory), output %.1f MB, peak %.1f MB",
+                inputBytes / 1e6, decompressed.getBytesRead() / 1e6, outputBytes / 1e6, (inputBytes + outputBytes) / 1e6));
+        } else {
+            System.out.println(String.format("Disk: input %.1f MB, output %.1f MB, peak %.1f MB",
+                inputBytes / 1e6, outputBytes / 1e6, (inputBytes + outputBytes) / 1e6));
+        }
+        if (snapshotsWritten > 0) {
+            System.out.println(String.format("Snapshots: %d, extraction %.1f us/snapshot",
+                snapshotsWritten, extractionNanos / 1e3 / snapshotsWritten));
+        }
+        System.out.println(metrics);
+        if (inventory.getUnreadableSlots() > 0) {
+            System.out.println("Unreadable inventory slots: " + inventory.getUnreadableSlots());
+        }
+    }
+
+    private void commitEvent() {
+        ReplayParseEvent event = new ReplayParseEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.replay = metrics.replay;
+        event.decodeNanos = metrics.decodeNanos;
+        event.extractionNanos = metrics.extractionNanos;
+        event.writingNanos = metrics.writingNanos;
+        event.ticks = metrics.ticks;
+        event.snapshotsWritten = metrics.snapshotsWritten;
+        event.entitiesScanned = metrics.entitiesScanned;
+        event.bytesWritten = metrics.bytesWritten;
+        event.allocatedBytes = metrics.allocatedBytes;
+        event.commit();
+    }
+
+    /**
+     * Parses only options.windowFrom..windowTo. The runner seeks to the last
+     * full packet before the window, found by bisecting the replay's ticks
+     * on the match time each probe lands on, and stops after the window.
+     */
+    private void parseWindow(Source source, Object[] processors) throws IOException {
+        ControllableRunner runner = new ControllableRunner(source).runWith(processors);
+        try {
+            int lo = 0;
+            int hi = runner.getLastTick();
+            seeking = true;
+            while (hi - lo > SEEK_PRECISION_TICKS) {
+                int mid = (lo + hi) >>> 1;
+                runner.seek(mid);
+                probedMatchTime = BEFORE_GAME;
+                runner.tick();
+                if (probedMatchTime < options.windowFrom) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            // the probes fed the combat log listeners from wherever they
+            // landed, past the window too; start them over from lo
+            scheduler.reset();
+            if (combatLog != null) {
+                combatLog.reset();
+            }
+            runner.seek(lo);
+            seeking = false;
+
+            int firstTick = runner.getTick();
+            while (!runner.isAtEnd() && !pastWindow) {
+                runner.tick();
+            }
+            System.out.println(String.format("Window %d..%d s: parsed ticks %d..%d of %d",
+                options.windowFrom, options.windowTo, firstTick, serverTick, runner.getLastTick()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing window of " + replayPath);
+        } finally {
+            runner.halt();
+        }
+    }
+
+    static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) deleteRecursively(c);
+        }
+        f.delete();
+    }
+
+    /**
+     * Replaces output with the finished partial file or directory.
+     */
+    static void moveIntoPlace(File partial, File output) throws IOException {
+        if (output.isDirectory()) {
+            // a directory can't be replaced in one rename
+            deleteRecursively(output);
+        }
+        Files.move(partial.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void setFieldPathCaching(boolean enabled) {
+        fieldPaths = new FieldPathCache(enabled);
     }
     
     @UsesStringTable("EntityNames")
@@ -254,6 +514,7 @@ public class ReplayParser {
     @OnTickStart
     public void onTickStart(Context context, boolean synthetic) {
         serverTick = context.getTick();
+        ticksProcessed++;
     
         Entity gamerulesProxy = context.getProcessor(Entities.class).getByDtName("CDOTAGamerulesProxy");
         if (gamerulesProxy == null) return;
@@ -265,12 +526,16 @@ public class ReplayParser {
         if (startTime == -1) return;
     
         Integer gameState = getEntityProperty(gamerulesProxy, "m_pGameRules.m_nGameState", null);
-        if (gameState == null || gameState >= 6) return;
+        if (gameState == null || gameState >= 6) {
+            if (gameState != null) probedMatchTime = AFTER_GAME;
+            return;
+        }
 
         Float currentGameTime = getEntityProperty(gamerulesProxy, "m_pGameRules.m_fGameTime", null);
 
         if (currentGameTime != null) {
             time = (int) Math.floor(currentGameTime);
+            exactMatchTime = currentGameTime - startTime;
         } else {
             Boolean isPaused = getEntityProperty(gamerulesProxy, "m_pGameRules.m_bGamePaused", null);
             Integer pauseStartTick = getEntityProperty(gamerulesProxy, "m_pGameRules.m_nPauseStartTick", null);
@@ -278,22 +543,28 @@ public class ReplayParser {
             if (totalPausedTicks == null) totalPausedTicks = 0;
             int effectiveTick = (isPaused != null && isPaused && pauseStartTick != null) ? pauseStartTick : serverTick;
             time = (int) Math.floor((float)(effectiveTick - totalPausedTicks) / TICK_RATE);
+            exactMatchTime = (float)(effectiveTick - totalPausedTicks) / TICK_RATE - startTime;
         }
         matchTime = time - startTime;
 
-        if (matchTime <= 0 || (serverTick % (TICK_RATE * processInterval)) != 0) return;
+        if (seeking) {
+            probedMatchTime = matchTime;
+            return;
+        }
+        if (options.hasWindow()) {
+            if (matchTime > options.windowTo) {
+                pastWindow = true;
+                return;
+            }
+            if (matchTime < options.windowFrom) return;
+        }
+        if (matchTime <= 0 || !scheduler.shouldSample(serverTick)) return;
+        SnapshotEvent event = new SnapshotEvent();
+        event.begin();
+        long tExtract = System.nanoTime();
+        long scannedBefore = entitiesScanned + inventory.getItemsRead();
     
-        radiantTeam.totalCampsStacked = 0;
-        radiantTeam.totalRunePickups = 0;
-        radiantTeam.totalTowersKilled = 0;
-        radiantTeam.totalRoshansKilled = 0;
-        radiantTeam.totalSmokesUsed = 0;
-
-        direTeam.totalCampsStacked = 0;
-        direTeam.totalRunePickups = 0;
-        direTeam.totalTowersKilled = 0;
-        direTeam.totalRoshansKilled = 0;
-        direTeam.totalSmokesUsed = 0;
+        state.resetTeamTotals();
 
         Entity playerResource = context.getProcessor(Entities.class).getByDtName("CDOTA_PlayerResource");
         if (playerResource == null) return;
@@ -308,222 +579,223 @@ public class ReplayParser {
         if (!init) {
             return;
         }
+        // player resource and both team data entities
+        entitiesScanned += 3;
 
         for (int i = 0; i < numPlayers; i++) {
             int idx = validIndices[i];
-            Player p = playersList.get(i);
-            p.team = getEntityProperty(playerResource, "m_vecPlayerData.%i.m_iPlayerTeam", idx);
+            Integer team = getEntityProperty(playerResource, "m_vecPlayerData.%i.m_iPlayerTeam", idx);
+            state.setInt(i, MatchState.TEAM, team);
             int teamSlot = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iTeamSlot", idx);
-            p.value = (p.team == 2 ? 0 : 128) + teamSlot;
-            
-            p.heroId = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_nSelectedHeroID", idx);
-            p.heroVariant = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_nSelectedHeroVariant", idx);
-            int handle = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_hSelectedHero", idx);
+            state.setInt(i, MatchState.VALUE, (team == 2 ? 0 : 128) + teamSlot);
             
-            p.level = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iLevel", idx);
-            p.kills = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iKills", idx);
-            p.deaths = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iDeaths", idx);
-            p.assists = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iAssists", idx);
-            p.teamfightParticipation = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_flTeamFightParticipation", idx);
-            p.respawnSeconds = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iRespawnSeconds", idx);
-
-            Entity dataTeam = (p.team == 2) ? dataRadiant : dataDire;
-
-            int currentGold = 0;
-            currentGold += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iReliableGold", teamSlot);
-            currentGold += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iUnreliableGold", teamSlot);
-            p.currentGold = currentGold;
-
-            p.heroDamage = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iHeroDamage", teamSlot);
-            p.towerDamage = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTowerDamage", teamSlot);
-            p.healing = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_fHealing", teamSlot);
-
-            int dmgPre = 0;
-            dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0000", teamSlot);
-            dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0001", teamSlot);
-            dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0002", teamSlot);
-            p.damageTakenPreReduction = dmgPre;
-
-            int dmgPost = 0;
-            dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0000", teamSlot);
-            dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0001", teamSlot);
-            dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0002", teamSlot);
-            p.damageTakenPostReduction = dmgPost;
-
-            Float buybackExpiresAt = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_flBuybackCooldownTime", teamSlot);
-            if (buybackExpiresAt != null && time != null) {
-                float cooldownRemaining = Math.max(0f, buybackExpiresAt - time);
-                p.buybackCooldown = (float) Math.floor(cooldownRemaining);
-            }
-
-            p.denies = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDenyCount", teamSlot);
-            p.obsPlaced = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iObserverWardsPlaced", teamSlot);
-            p.senPlaced = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iSentryWardsPlaced", teamSlot);
-            p.networth = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iNetWorth", teamSlot);
-
-            if (teamSlot >= 0) {
-                p.totalGold = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTotalEarnedGold", teamSlot);
-                p.lastHits = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iLastHitCount", teamSlot);
-                p.xp = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTotalEarnedXP", teamSlot);
+            if (profile.intField(MatchState.HERO_ID)) {
+                state.setInt(i, MatchState.HERO_ID, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_nSelectedHeroID", idx));
+            }
+            if (profile.intField(MatchState.HERO_VARIANT)) {
+                state.setInt(i, MatchState.HERO_VARIANT, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_nSelectedHeroVariant", idx));
             }
             
-            Integer smokesUsed = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iSmokesUsed", teamSlot);
-            Integer campsStacked = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iCampsStacked", teamSlot);
-            Integer runePickups = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iRunePickups", teamSlot);
-            Integer towersKilled = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTowerKills", teamSlot);
-            Integer roshansKilled = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iRoshanKills", teamSlot);
-
-            if (p.team == 2) {
-                radiantTeam.totalCampsStacked += (campsStacked != null) ? campsStacked : 0;
-                radiantTeam.totalRunePickups += (runePickups != null) ? runePickups : 0;
-                radiantTeam.totalTowersKilled += (towersKilled != null) ? towersKilled : 0;
-                radiantTeam.totalRoshansKilled += (roshansKilled != null) ? roshansKilled : 0;
-                radiantTeam.totalSmokesUsed += (smokesUsed != null) ? smokesUsed : 0;
-            } else if (p.team == 3) {
-                direTeam.totalCampsStacked += (campsStacked != null) ? campsStacked : 0;
-                direTeam.totalRunePickups += (runePickups != null) ? runePickups : 0;
-                direTeam.totalTowersKilled += (towersKilled != null) ? towersKilled : 0;
-                direTeam.totalRoshansKilled += (roshansKilled != null) ? roshansKilled : 0;
-                direTeam.totalSmokesUsed += (smokesUsed != null) ? smokesUsed : 0;
-            }            
-
-            Entity heroEntity = context.getProcessor(Entities.class).getByHandle(handle);
-            if (heroEntity != null) {
-                Integer cx = getEntityProperty(heroEntity, "CBodyComponent.m_cellX", null);
-                Integer cy = getEntityProperty(heroEntity, "CBodyComponent.m_cellY", null);
-                Float vx = getEntityProperty(heroEntity, "CBodyComponent.m_vecX", null);
-                Float vy = getEntityProperty(heroEntity, "CBodyComponent.m_vecY", null);
-                if (cx != null && cy != null) {
-                    p.x = getPreciseLocation(cx, vx);
-                    p.y = getPreciseLocation(cy, vy);
-                }
-                p.unit = heroEntity.getDtClass().getDtName();
-                p.lifeState = getEntityProperty(heroEntity, "m_lifeState", null);
-
-                // List<Ability> abilities = getHeroAbilities(context, heroEntity);
-                // p.abilities = abilities;
-            
-                List<Item> inventory = getHeroInventory(context, heroEntity);
-                p.inventory = inventory;
+            if (profile.intField(MatchState.LEVEL)) {
+                state.setInt(i, MatchState.LEVEL, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iLevel", idx));
+            }
+            if (profile.intField(MatchState.KILLS)) {
+                state.setInt(i, MatchState.KILLS, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iKills", idx));
+            }
+            if (profile.intField(MatchState.DEATHS)) {
+                state.setInt(i, MatchState.DEATHS, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iDeaths", idx));
+            }
+            if (profile.intField(MatchState.ASSISTS)) {
+                state.setInt(i, MatchState.ASSISTS, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iAssists", idx));
+            }
+            if (profile.floatField(MatchState.TEAMFIGHT_PARTICIPATION)) {
+                state.setFloat(i, MatchState.TEAMFIGHT_PARTICIPATION, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_flTeamFightParticipation", idx));
+            }
+            if (profile.intField(MatchState.RESPAWN_SECONDS)) {
+                state.setInt(i, MatchState.RESPAWN_SECONDS, getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_iRespawnSeconds", idx));
             }
-        }
-
-        Entities entities = context.getProcessor(Entities.class);
-        StringTable stEntityNames = context.getProcessor(StringTables.class).forName("EntityNames");
-
-        Iterator<Entity> it = entities.getAllByPredicate(e -> {
-            String dt = e.getDtClass().getDtName();
-            return dt.startsWith("CDOTA_BaseNPC_") &&
-                    (dt.contains("Tower") || dt.contains("Barracks") || dt.contains("Fort"));
-        });
-
-        Set<String> currentBuildings = new HashSet<>();
-
-        while (it.hasNext()) {
-            Entity ent = it.next();
-
-            Integer hp = ent.getProperty("m_iHealth");
-            Integer team = ent.getProperty("m_iTeamNum");
-            Integer nameIdx = ent.getProperty("m_pEntity.m_nameStringableIndex");
-
-            if (hp == null || team == null || nameIdx == null) continue;
-            if (team != 2 && team != 3) continue;
-
-            String name = stEntityNames.getNameByIndex(nameIdx);
-            if (name == null) continue;
-
-            currentBuildings.add(name);
 
-            Building b = new Building(name, team, hp);
+            Entity dataTeam = (team == 2) ? dataRadiant : dataDire;
 
-            Team targetTeam = (team == 2) ? radiantTeam : direTeam;
+            if (profile.intField(MatchState.CURRENT_GOLD)) {
+                int currentGold = 0;
+                currentGold += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iReliableGold", teamSlot);
+                currentGold += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iUnreliableGold", teamSlot);
+                state.setInt(i, MatchState.CURRENT_GOLD, currentGold);
+            }
 
-            if (name.contains("tower1_top")) targetTeam.setBuilding("topTier1", b);
-            else if (name.contains("tower2_top")) targetTeam.setBuilding("topTier2", b);
-            else if (name.contains("tower3_top")) targetTeam.setBuilding("topTier3", b);
+            if (profile.intField(MatchState.HERO_DAMAGE)) {
+                state.setInt(i, MatchState.HERO_DAMAGE, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iHeroDamage", teamSlot));
+            }
+            if (profile.intField(MatchState.TOWER_DAMAGE)) {
+                state.setInt(i, MatchState.TOWER_DAMAGE, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTowerDamage", teamSlot));
+            }
+            if (profile.floatField(MatchState.HEALING)) {
+                state.setFloat(i, MatchState.HEALING, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_fHealing", teamSlot));
+            }
 
-            else if (name.contains("tower1_mid")) targetTeam.setBuilding("midTier1", b);
-            else if (name.contains("tower2_mid")) targetTeam.setBuilding("midTier2", b);
-            else if (name.contains("tower3_mid")) targetTeam.setBuilding("midTier3", b);
+            if (profile.intField(MatchState.DAMAGE_TAKEN_PRE_REDUCTION)) {
+                int dmgPre = 0;
+                dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0000", teamSlot);
+                dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0001", teamSlot);
+                dmgPre += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPreReduction.0002", teamSlot);
+                state.setInt(i, MatchState.DAMAGE_TAKEN_PRE_REDUCTION, dmgPre);
+            }
 
-            else if (name.contains("tower1_bot")) targetTeam.setBuilding("botTier1", b);
-            else if (name.contains("tower2_bot")) targetTeam.setBuilding("botTier2", b);
-            else if (name.contains("tower3_bot")) targetTeam.setBuilding("botTier3", b);
+            if (profile.intField(MatchState.DAMAGE_TAKEN_POST_REDUCTION)) {
+                int dmgPost = 0;
+                dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0000", teamSlot);
+                dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0001", teamSlot);
+                dmgPost += (int) getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDamageByTypeReceivedPostReduction.0002", teamSlot);
+                state.setInt(i, MatchState.DAMAGE_TAKEN_POST_REDUCTION, dmgPost);
+            }
 
-            else if (name.contains("tower4")) {
-                if (name.contains("top")) targetTeam.setBuilding("tier4a", b);
-                else if (name.contains("bot")) targetTeam.setBuilding("tier4b", b);
-                else {
-                    if (!targetTeam.buildings.containsKey("tier4a")) targetTeam.setBuilding("tier4a", b);
-                    else targetTeam.setBuilding("tier4b", b);
+            if (profile.floatField(MatchState.BUYBACK_COOLDOWN)) {
+                Float buybackExpiresAt = getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_flBuybackCooldownTime", teamSlot);
+                if (buybackExpiresAt != null && time != null) {
+                    float cooldownRemaining = Math.max(0f, buybackExpiresAt - time);
+                    state.setFloat(i, MatchState.BUYBACK_COOLDOWN, (float) Math.floor(cooldownRemaining));
                 }
             }
 
-            else if (name.contains("rax_melee_top")) targetTeam.setBuilding("topRaxMelee", b);
-            else if (name.contains("rax_range_top")) targetTeam.setBuilding("topRaxRanged", b);
-
-            else if (name.contains("rax_melee_mid")) targetTeam.setBuilding("midRaxMelee", b);
-            else if (name.contains("rax_range_mid")) targetTeam.setBuilding("midRaxRanged", b);
+            if (profile.intField(MatchState.DENIES)) {
+                state.setInt(i, MatchState.DENIES, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iDenyCount", teamSlot));
+            }
+            if (profile.intField(MatchState.OBS_PLACED)) {
+                state.setInt(i, MatchState.OBS_PLACED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iObserverWardsPlaced", teamSlot));
+            }
+            if (profile.intField(MatchState.SEN_PLACED)) {
+                state.setInt(i, MatchState.SEN_PLACED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iSentryWardsPlaced", teamSlot));
+            }
+            if (profile.intField(MatchState.NETWORTH)) {
+                state.setInt(i, MatchState.NETWORTH, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iNetWorth", teamSlot));
+            }
 
-            else if (name.contains("rax_melee_bot")) targetTeam.setBuilding("botRaxMelee", b);
-            else if (name.contains("rax_range_bot")) targetTeam.setBuilding("botRaxRanged", b);
+            if (teamSlot >= 0) {
+                if (profile.intField(MatchState.TOTAL_GOLD)) {
+                    state.setInt(i, MatchState.TOTAL_GOLD, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTotalEarnedGold", teamSlot));
+                }
+                if (profile.intField(MatchState.LAST_HITS)) {
+                    state.setInt(i, MatchState.LAST_HITS, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iLastHitCount", teamSlot));
+                }
+                if (profile.intField(MatchState.XP)) {
+                    state.setInt(i, MatchState.XP, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTotalEarnedXP", teamSlot));
+                }
+            }
+            
+            if (team == 2 || team == 3) {
+                int t = MatchState.teamIndex(team);
+                if (profile.teamField(MatchState.SMOKES_USED)) {
+                    state.addTeamTotal(t, MatchState.SMOKES_USED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iSmokesUsed", teamSlot));
+                }
+                if (profile.teamField(MatchState.CAMPS_STACKED)) {
+                    state.addTeamTotal(t, MatchState.CAMPS_STACKED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iCampsStacked", teamSlot));
+                }
+                if (profile.teamField(MatchState.RUNE_PICKUPS)) {
+                    state.addTeamTotal(t, MatchState.RUNE_PICKUPS, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iRunePickups", teamSlot));
+                }
+                if (profile.teamField(MatchState.TOWERS_KILLED)) {
+                    state.addTeamTotal(t, MatchState.TOWERS_KILLED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iTowerKills", teamSlot));
+                }
+                if (profile.teamField(MatchState.ROSHANS_KILLED)) {
+                    state.addTeamTotal(t, MatchState.ROSHANS_KILLED, getEntityProperty(dataTeam, "m_vecDataTeam.%i.m_iRoshanKills", teamSlot));
+                }
+            }
 
-            else if (name.contains("fort")) targetTeam.setBuilding("ancient", b);
-        }
+            if (!profile.needsHeroEntity() && combatLog == null) {
+                continue;
+            }
+            int handle = getEntityProperty(playerResource, "m_vecPlayerTeamData.%i.m_hSelectedHero", idx);
+            Entity heroEntity = context.getProcessor(Entities.class).getByHandle(handle);
+            if (heroEntity != null) {
+                entitiesScanned++;
+                if (combatLog != null) {
+                    combatLog.bind(context, i, heroEntity);
+                }
+                if (profile.floatField(MatchState.X) || profile.floatField(MatchState.Y)) {
+                    Integer cx = getEntityProperty(heroEntity, "CBodyComponent.m_cellX", null);
+                    Integer cy = getEntityProperty(heroEntity, "CBodyComponent.m_cellY", null);
+                    Float vx = getEntityProperty(heroEntity, "CBodyComponent.m_vecX", null);
+                    Float vy = getEntityProperty(heroEntity, "CBodyComponent.m_vecY", null);
+                    if (cx != null && cy != null) {
+                        if (profile.floatField(MatchState.X)) state.setFloat(i, MatchState.X, getPreciseLocation(cx, vx));
+                        if (profile.floatField(MatchState.Y)) state.setFloat(i, MatchState.Y, getPreciseLocation(cy, vy));
+                    }
+                }
+                if (profile.units()) {
+                    state.units[i] = heroEntity.getDtClass().getDtName();
+                }
+                if (profile.intField(MatchState.LIFE_STATE)) {
+                    state.setInt(i, MatchState.LIFE_STATE, getEntityProperty(heroEntity, "m_lifeState", null));
+                }
 
-        for (Map.Entry<String, Building> entry : radiantTeam.buildings.entrySet()) {
-            if (!currentBuildings.contains(entry.getValue().name)) {
-                radiantTeam.setBuilding(entry.getKey(), new Building(entry.getValue().name, 2, 0));
+                // List<Ability> abilities = getHeroAbilities(context, heroEntity);
+                // p.abilities = abilities;
+            
+                if (profile.inventory()) {
+                    inventory.read(context, heroEntity, state, i);
+                }
             }
         }
 
-        for (Map.Entry<String, Building> entry : direTeam.buildings.entrySet()) {
-            if (!currentBuildings.contains(entry.getValue().name)) {
-                direTeam.setBuilding(entry.getKey(), new Building(entry.getValue().name, 3, 0));
-            }
+        state.clearWards();
+        if (profile.wards()) {
+            readWards(context.getProcessor(Entities.class));
+        }
+        if (mapIndex != null) {
+            mapIndex.compute(state);
+        }
+        if (combatLog != null) {
+            combatLog.compute(state, serverTick);
         }
 
-        radiantTeam.observerWards.clear();
-        direTeam.observerWards.clear();
+        long tWrite = System.nanoTime();
+        extractionNanos += tWrite - tExtract;
+        snapshotsWritten++;
+        float snapshotTime = scheduler.isSubSecond() ? exactMatchTime : matchTime;
+        try {
+            state.tick = serverTick;
+            sink.write(snapshotTime, state);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write snapshot at matchTime=" + matchTime, e);
+        }
+        long written = System.nanoTime() - tWrite;
+        writingNanos += written;
 
+        if (event.shouldCommit()) {
+            event.tick = serverTick;
+            event.matchTime = snapshotTime;
+            event.entitiesScanned = (int) (entitiesScanned + inventory.getItemsRead() - scannedBefore);
+            event.writingNanos = written;
+            event.commit();
+        }
+    }
+    
+    private void readWards(Entities entities) {
         Iterator<Entity> wards = entities.getAllByDtName("CDOTA_NPC_Observer_Ward");
         while (wards.hasNext()) {
             Entity ward = wards.next();
-            Integer team = ward.getProperty("m_iTeamNum");
-            Integer lifeState = ward.getProperty("m_lifeState");
+            entitiesScanned++;
+            Integer team = getEntityProperty(ward, "m_iTeamNum", null);
+            Integer lifeState = getEntityProperty(ward, "m_lifeState", null);
 
             if (team != null && lifeState != null && lifeState == 0) {
                 Float x = getPreciseLocation(
-                    ward.getProperty("CBodyComponent.m_cellX"),
-                    ward.getProperty("CBodyComponent.m_vecX")
+                    getEntityProperty(ward, "CBodyComponent.m_cellX", null),
+                    getEntityProperty(ward, "CBodyComponent.m_vecX", null)
                 );
                 Float y = getPreciseLocation(
-                    ward.getProperty("CBodyComponent.m_cellY"),
-                    ward.getProperty("CBodyComponent.m_vecY")
+                    getEntityProperty(ward, "CBodyComponent.m_cellY", null),
+                    getEntityProperty(ward, "CBodyComponent.m_vecY", null)
                 );
-                Map<String, Float> pos = new HashMap<>();
-                pos.put("x", x);
-                pos.put("y", y);
-
-                if (team == 2) {
-                    radiantTeam.observerWards.add(pos);
-                } else if (team == 3) {
-                    direTeam.observerWards.add(pos);
+
+                if (team == 2 || team == 3) {
+                    state.addWard(MatchState.teamIndex(team), x, y);
                 }
             }
         }
-
-        Map<String, Object> snapshot = new LinkedHashMap<>();
-        snapshot.put("radiant", deepCopyTeam(radiantTeam));
-        snapshot.put("dire", deepCopyTeam(direTeam));
-        try {
-            jsonGen.writeFieldName(String.valueOf(matchTime));
-            mapper.writeValue(jsonGen, snapshot);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to write JSON incrementally at matchTime=" + matchTime, e);
-        }
     }
-    
+
     private void initializePlayers(Entity playerResource) {
         int added = 0;
         int i = 0;
@@ -536,23 +808,16 @@ public class ReplayParser {
                 String playerName = getEntityProperty(playerResource, "m_vecPlayerData.%i.m_iszPlayerName", i);
 
                 if (playerTeam == 2 || playerTeam == 3) {
-                    Player player = new Player();
-                    player.key = String.valueOf(added);
-                    player.value = (playerTeam == 2 ? 0 : 128) + teamSlot;
-                    player.team = playerTeam;
-                    player.name = playerName;
-                    player.steamId = steamId;
+                    int value = (playerTeam == 2 ? 0 : 128) + teamSlot;
+                    state.setInt(added, MatchState.VALUE, value);
+                    state.setInt(added, MatchState.TEAM, playerTeam);
+                    state.names[added] = playerName;
+                    state.setSteamId(added, steamId);
+                    state.addToRoster(added, playerTeam);
                     validIndices[added] = i;
-                    slot_to_playerslot.put(added, player.value);
-                    steamid_to_playerslot.put(steamId, player.value);
-                    playersList.add(player);
+                    slot_to_playerslot.put(added, value);
+                    steamid_to_playerslot.put(steamId, value);
                     added++;
-
-                    if (playerTeam == 2) {
-                        radiantTeam.players.add(player);
-                    } else if (playerTeam == 3) {
-                        direTeam.players.add(player);
-                    }                    
                 }
             } catch (Exception e) {
                 System.out.println("Error while initializing player " + i + ": " + e.getMessage());
@@ -566,38 +831,7 @@ public class ReplayParser {
     }
 
     public <T> T getEntityProperty(Entity e, String property, Integer idx) {
-        try {
-            if (e == null) {
-                return null;
-            }
-            if (idx != null) {
-                property = property.replace("%i", Util.arrayIdxToString(idx));
-            }
-            FieldPath fp = e.getDtClass().getFieldPathForName(property);
-            if (fp == null) {
-                return null;
-            }
-            return e.getPropertyForFieldPath(fp);
-        } catch (Exception ex) {
-            return null;
-        }
-    }
-
-    private List<Item> getHeroInventory(Context ctx, Entity eHero) {
-        List<Item> inventoryList = new ArrayList<>(6);
-
-        for (int i = 0; i < 8; i++) {
-            try {
-                Item item = getHeroItem(ctx, eHero, i);
-                if (item != null) {
-                    inventoryList.add(item);
-                }
-            } catch (Exception e) {
-                System.err.println(e);
-            }
-        }
-
-        return inventoryList;
+        return (idx != null) ? fieldPaths.get(e, property, idx) : fieldPaths.get(e, property);
     }
 
     private List<Ability> getHeroAbilities(Context ctx, Entity eHero) {
@@ -656,51 +890,24 @@ public class ReplayParser {
         return ability;
     }
 
-    private Item getHeroItem(Context ctx, Entity eHero, int idx) throws UnknownItemFoundException {
-        StringTable stEntityNames = ctx.getProcessor(StringTables.class).forName("EntityNames");
-        Entities entities = ctx.getProcessor(Entities.class);
+    public int getTicksProcessed() {
+        return ticksProcessed;
+    }
 
-        Integer hItem = eHero.getProperty("m_hItems." + Util.arrayIdxToString(idx));
-        if (hItem == 0xFFFFFF) {
-            return null;
-        }
-        Entity eItem = entities.getByHandle(hItem);
-        if (eItem == null) {
-            throw new UnknownItemFoundException(String.format("Can't find item by its handle (%d)", hItem));
-        }
-        String itemName = stEntityNames.getNameByIndex(eItem.getProperty("m_pEntity.m_nameStringableIndex"));
-        if (itemName == null) {
-            throw new UnknownItemFoundException("Can't get item name from EntityName string table");
-        }
+    public int getSnapshotsWritten() {
+        return snapshotsWritten;
+    }
 
-        Item item = new Item();
-        item.id = itemName;
-        item.slot = idx;
-        int numCharges = eItem.getProperty("m_iCurrentCharges");
-        if (numCharges != 0) {
-            item.num_charges = numCharges;
-        }
-        int numSecondaryCharges = eItem.getProperty("m_iSecondaryCharges");
-        if (numSecondaryCharges != 0) {
-            item.num_secondary_charges = numSecondaryCharges;
-        }
-        return item;
+    public long getExtractionNanos() {
+        return extractionNanos;
     }
 
-    private Team deepCopyTeam(Team original) {
-        Team copy = new Team(original.teamId);
-        for (Player p : original.players) {
-            Player np = mapper.convertValue(p, Player.class);
-            copy.players.add(np);
-        }
-        copy.buildings.putAll(original.buildings);
-        copy.observerWards = new ArrayList<>(original.observerWards);
-        copy.totalCampsStacked = original.totalCampsStacked;
-        copy.totalRunePickups = original.totalRunePickups;
-        copy.totalTowersKilled = original.totalTowersKilled;
-        copy.totalRoshansKilled = original.totalRoshansKilled;
-        copy.totalSmokesUsed = original.totalSmokesUsed;
-        return copy;
+    /**
+     * Phase timings and counters of the last parse(); filled in once it
+     * has finished.
+     */
+    public ParseMetrics getMetrics() {
+        return metrics;
     }
 
     private Float getPreciseLocation (Integer cell, Float vec) {
@@ -708,13 +915,23 @@ public class ReplayParser {
     }
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchParser.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if (args.length < 2) {
-            System.err.println("Usage: java -jar replay-parser-1.0.0.jar <replay.dem> <output.json>");
+            System.err.println("Usage: java -jar replay-parser-1.0.0.jar <replay.dem[.bz2|.zst]> <output|tcp://host:port> [sampling] [--format json|ndjson|binary|columnar|delta|tensors [--keyframe-interval K] [--vocab DIR]] [--write-buffer N] [--profile full|model|FILE] [--map-features] [--recent-stats] [--model FILE.onnx --vocab DIR [--inference-batch N] [--inference-threads N]] [--names FILE] [--replay-memory SIZE] [--cache DIR [--cache-size SIZE]] [--live [--live-timeout S]]");
+            System.err.println("       java -jar replay-parser-1.0.0.jar --batch <manifest.txt|replay-dir|-> <output-dir> [sampling] [--format json|ndjson|binary|columnar|delta|tensors [--keyframe-interval K] [--vocab DIR]] [--write-buffer N] [--profile full|model|FILE] [--map-features] [--recent-stats] [--model FILE.onnx --vocab DIR [--inference-batch N] [--inference-threads N]] [--names FILE] [--replay-memory SIZE] [--cache DIR [--cache-size SIZE]] [--threads N] [--memory-budget SIZE] [--no-resume]");
+            System.err.println(SAMPLING_USAGE);
+            System.err.println("Output: tcp://host:port streams one JSON line per snapshot to a listening consumer as it is parsed;");
+            System.err.println("        --live follows a .dem that is still being written until it stops growing for S seconds (default 60)");
             return;
         }
         String replayPath = args[0];
         String outputPath = args[1];
-        ReplayParser parser = new ReplayParser(replayPath, 30, outputPath);
+        ParserOptions options = ParserOptions.fromArgs(args, 2);
+        ReplayParser parser = new ReplayParser(replayPath, outputPath, options);
         parser.parse();
+        options.saveNames();
     }
 }
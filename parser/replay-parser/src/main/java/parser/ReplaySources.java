@@ -0,0 +1,122 @@
+package parser;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import skadistats.clarity.source.InputStreamSource;
+import skadistats.clarity.source.LiveSource;
+import skadistats.clarity.source.MappedFileSource;
+import skadistats.clarity.source.Source;
+
+/**
+ * Opens a Clarity source for a replay path. Plain .dem files are memory
+ * mapped; .dem.bz2 and .dem.zst files are decompressed on a background
+ * thread straight into the parser, without an intermediate file.
+ */
+public final class ReplaySources {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNKS = 16;
+
+    private ReplaySources() {
+    }
+
+    public static boolean isCompressed(String replayPath) {
+        return replayPath.endsWith(".bz2") || replayPath.endsWith(".zst");
+    }
+
+    public static boolean isReplay(String fileName) {
+        return fileName.endsWith(".dem") || fileName.endsWith(".dem.bz2") || fileName.endsWith(".dem.zst");
+    }
+
+    /**
+     * Strips ".dem", ".dem.bz2" or ".dem.zst" from a replay file name.
+     */
+    public static String stem(String fileName) {
+        for (String ext : new String[] {".dem.bz2", ".dem.zst", ".dem"}) {
+            if (fileName.endsWith(ext)) {
+                return fileName.substring(0, fileName.length() - ext.length());
+            }
+        }
+        return fileName;
+    }
+
+    public static Source open(String replayPath) throws IOException {
+        if (!isCompressed(replayPath)) {
+            return new MappedFileSource(replayPath);
+        }
+        return new InputStreamSource(openDecompressed(replayPath));
+    }
+
+    /**
+     * A source for a replay that is still being written, e.g. a broadcast
+     * being recorded. Reads wait for the file to grow and the replay ends
+     * once it stopped growing for timeoutSeconds.
+     */
+    public static Source openLive(String replayPath, int timeoutSeconds) throws IOException {
+        if (isCompressed(replayPath)) {
+            throw new IllegalArgumentException("Live replays must be uncompressed .dem files: " + replayPath);
+        }
+        return new LiveSource(replayPath, timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reads a plain replay through a bounded read-ahead buffer instead of
+     * mapping it whole, for replays larger than the memory a parse may use.
+     */
+    public static ReadAheadInputStream openStreamed(String replayPath) throws IOException {
+        return new ReadAheadInputStream(new FileInputStream(replayPath), CHUNK_SIZE, MAX_CHUNKS, "read-" + replayPath);
+    }
+
+    public static Source open(ReadAheadInputStream decompressed) {
+        return new InputStreamSource(decompressed);
+    }
+
+    /**
+     * Bytes used on disk by a file or, for columnar output, a directory tree.
+     */
+    public static long diskUsage(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long total = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                total += diskUsage(child);
+            }
+        }
+        return total;
+    }
+
+    public static ReadAheadInputStream openDecompressed(String replayPath) throws IOException {
+        return new ReadAheadInputStream(openContent(replayPath), CHUNK_SIZE, MAX_CHUNKS, "decompress-" + replayPath);
+    }
+
+    /**
+     * The replay's .dem content on the calling thread, decompressed if
+     * needed; for reading a part of it, e.g. to fingerprint it.
+     */
+    public static InputStream openContent(String replayPath) throws IOException {
+        InputStream raw = new BufferedInputStream(new FileInputStream(replayPath), CHUNK_SIZE);
+        if (!isCompressed(replayPath)) {
+            return raw;
+        }
+        try {
+            return replayPath.endsWith(".zst")
+                ? new ZstdInputStream(raw)
+                : new BZip2CompressorInputStream(raw, true);
+        } catch (IOException e) {
+            raw.close();
+            throw e;
+        }
+    }
+}
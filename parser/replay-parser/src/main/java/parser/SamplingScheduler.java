@@ -0,0 +1,28 @@
+package parser;
+
+/**
+ * Decides at which server ticks a snapshot is taken. Schedulers are
+ * stateful and belong to one replay; ReplayParser asks once per tick, in
+ * tick order, from the first tick of the match on.
+ */
+public interface SamplingScheduler {
+
+    /**
+     * Returns true if a snapshot should be taken at this tick. A scheduler
+     * never loses a sample to a skipped tick: a due sample is taken at the
+     * first tick at or after it.
+     */
+    boolean shouldSample(int tick);
+
+    /**
+     * True when samples can be less than a second apart, in which case
+     * snapshots are keyed by fractional match time.
+     */
+    boolean isSubSecond();
+
+    /**
+     * Forgets everything seen so far, for a runner that seeks back: the
+     * next tick asked about starts over as if it were the first.
+     */
+    void reset();
+}
@@ -0,0 +1,209 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * Featurizes a MatchState into one TimesliceTransformer input slice, at a
+ * slice index of caller-owned arrays:
+ *
+ *   heroIds     [10]      FeatureVocabulary hero indices
+ *   itemIds     [10, 6]   first six items, padding index if fewer
+ *   playerNums  [10, 19]  log1p of PLAYER_NUMERIC
+ *   teamNums    [2, 31]   log1p of building health, TEAM_NUMERIC
+ *
+ * Players are radiant then dire in roster order. The features are those of
+ * the data_processing notebook: lifeState is 0 alive / 1 otherwise,
+ * respawnSeconds is clamped at 0, and the team spread and ward coverage
+ * features are computed from alive hero and observer ward positions. Missing
+ * numbers count as 0; a hero missing from the vocabulary gets index 0.
+ *
+ * Shared by TensorSnapshotSink and InferenceSnapshotSink, so the model sees
+ * in the parser what it was trained on.
+ */
+class SliceEncoder {
+
+    static final int PLAYERS = 10;
+    static final int ITEMS = 6;
+
+    // MatchState int field ids; float fields are stored as -1 - id
+    static final int[] PLAYER_NUMERIC = {
+        MatchState.LEVEL, MatchState.XP, MatchState.NETWORTH, MatchState.TOTAL_GOLD, MatchState.CURRENT_GOLD,
+        MatchState.LIFE_STATE, MatchState.RESPAWN_SECONDS, -1 - MatchState.BUYBACK_COOLDOWN,
+        MatchState.HERO_DAMAGE, MatchState.TOWER_DAMAGE, MatchState.DAMAGE_TAKEN_POST_REDUCTION,
+        MatchState.KILLS, MatchState.DEATHS, MatchState.ASSISTS, MatchState.LAST_HITS, MatchState.DENIES,
+        -1 - MatchState.TEAMFIGHT_PARTICIPATION, MatchState.OBS_PLACED, MatchState.SEN_PLACED
+    };
+    static final String[] TEAM_NUMERIC = {
+        "totalCampsStacked", "totalRunePickups", "totalTowersKilled", "totalRoshansKilled", "totalSmokesUsed",
+        "numWards", "pdistMean", "pdistMax", "pdistStd", "centroidWardMean", "hwMean", "hwMin", "hwMax"
+    };
+    static final int PLAYER_FEATURES = PLAYER_NUMERIC.length;
+    static final int TEAM_FEATURES = MatchState.BUILDING_SLOTS + TEAM_NUMERIC.length;
+
+    // distance used when a team has no alive hero or no ward
+    private static final double MAP_DIAG = 256.0;
+
+    private final FeatureVocabulary vocabulary;
+    private int unknownHeroes = 0;
+
+    // alive hero positions of the team being encoded
+    private final double[] heroX = new double[MatchState.PLAYERS];
+    private final double[] heroY = new double[MatchState.PLAYERS];
+
+    SliceEncoder(FeatureVocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    void encode(MatchState s, int slice, int[] heroIds, int[] itemIds, float[] playerNums, float[] teamNums) {
+        int slot = 0;
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            for (int i = 0; i < s.rosterSize[t] && slot < PLAYERS; i++) {
+                encodePlayer(s, s.roster[t][i], slice * PLAYERS + slot++, heroIds, itemIds, playerNums);
+            }
+        }
+        for (; slot < PLAYERS; slot++) {
+            int row = slice * PLAYERS + slot;
+            heroIds[row] = 0;
+            Arrays.fill(itemIds, row * ITEMS, (row + 1) * ITEMS, vocabulary.padIndex());
+            Arrays.fill(playerNums, row * PLAYER_FEATURES, (row + 1) * PLAYER_FEATURES, 0f);
+        }
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            encodeTeam(s, t, (slice * MatchState.TEAMS + t) * TEAM_FEATURES, teamNums);
+        }
+    }
+
+    private void encodePlayer(MatchState s, int p, int row, int[] heroIds, int[] itemIds, float[] playerNums) {
+        int hero = s.hasInt(p, MatchState.HERO_ID) ? vocabulary.hero(s.getInt(p, MatchState.HERO_ID)) : FeatureVocabulary.UNKNOWN;
+        if (hero == FeatureVocabulary.UNKNOWN) {
+            unknownHeroes++;
+            hero = 0;
+        }
+        heroIds[row] = hero;
+
+        // like the JSON inventory list: occupied slots in slot order
+        int items = 0;
+        int base = p * MatchState.INVENTORY_SLOTS;
+        for (int i = base; i < base + MatchState.INVENTORY_SLOTS && items < ITEMS; i++) {
+            if (s.itemIds[i] != null) {
+                itemIds[row * ITEMS + items++] = vocabulary.item(s.itemIds[i]);
+            }
+        }
+        for (; items < ITEMS; items++) {
+            itemIds[row * ITEMS + items] = vocabulary.padIndex();
+        }
+
+        int out = row * PLAYER_FEATURES;
+        for (int f = 0; f < PLAYER_FEATURES; f++) {
+            double value;
+            int field = PLAYER_NUMERIC[f];
+            if (field >= 0) {
+                value = s.hasInt(p, field) ? s.getInt(p, field) : 0;
+            } else {
+                value = s.hasFloat(p, -1 - field) ? s.getFloat(p, -1 - field) : 0;
+            }
+            if (field == MatchState.LIFE_STATE) {
+                value = value == 0 ? 0 : 1;
+            } else if (field == MatchState.RESPAWN_SECONDS) {
+                value = Math.max(0, value);
+            }
+            playerNums[out + f] = (float) Math.log1p(value);
+        }
+    }
+
+    private void encodeTeam(MatchState s, int t, int out, float[] teamNums) {
+        for (int i = 0; i < MatchState.BUILDING_SLOTS; i++) {
+            int b = t * MatchState.BUILDING_SLOTS + SnapshotWriter.SORTED_BUILDING_SLOTS[i];
+            teamNums[out++] = (float) Math.log1p(s.buildingNames[b] != null ? s.buildingHealth[b] : 0);
+        }
+        teamNums[out++] = (float) Math.log1p(s.getTeamTotal(t, MatchState.CAMPS_STACKED));
+        teamNums[out++] = (float) Math.log1p(s.getTeamTotal(t, MatchState.RUNE_PICKUPS));
+        teamNums[out++] = (float) Math.log1p(s.getTeamTotal(t, MatchState.TOWERS_KILLED));
+        teamNums[out++] = (float) Math.log1p(s.getTeamTotal(t, MatchState.ROSHANS_KILLED));
+        teamNums[out++] = (float) Math.log1p(s.getTeamTotal(t, MatchState.SMOKES_USED));
+
+        int alive = 0;
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0; i < s.rosterSize[t]; i++) {
+            int p = s.roster[t][i];
+            boolean isAlive = !s.hasInt(p, MatchState.LIFE_STATE) || s.getInt(p, MatchState.LIFE_STATE) == 0;
+            if (isAlive && s.hasFloat(p, MatchState.X) && s.hasFloat(p, MatchState.Y)) {
+                heroX[alive] = s.getFloat(p, MatchState.X);
+                heroY[alive] = s.getFloat(p, MatchState.Y);
+                cx += heroX[alive];
+                cy += heroY[alive];
+                alive++;
+            }
+        }
+
+        double pdistMean = 0;
+        double pdistMax = 0;
+        double pdistStd = 0;
+        if (alive >= 2) {
+            int pairs = 0;
+            double sum = 0;
+            double sumSq = 0;
+            for (int a = 0; a < alive; a++) {
+                for (int b = a + 1; b < alive; b++) {
+                    double d = Math.hypot(heroX[a] - heroX[b], heroY[a] - heroY[b]);
+                    sum += d;
+                    sumSq += d * d;
+                    pdistMax = Math.max(pdistMax, d);
+                    pairs++;
+                }
+            }
+            pdistMean = sum / pairs;
+            pdistStd = Math.sqrt(Math.max(0, sumSq / pairs - pdistMean * pdistMean));
+        }
+        if (alive > 0) {
+            cx /= alive;
+            cy /= alive;
+        }
+
+        int wards = s.wardCount[t];
+        double centroidWardMean = 0;
+        for (int w = 0; w < wards; w++) {
+            centroidWardMean += Math.hypot(s.wardX[t][w] - cx, s.wardY[t][w] - cy);
+        }
+        if (wards > 0) {
+            centroidWardMean /= wards;
+        }
+
+        double hwMean = MAP_DIAG;
+        double hwMin = MAP_DIAG;
+        double hwMax = MAP_DIAG;
+        if (alive > 0 && wards > 0) {
+            double sum = 0;
+            hwMin = Double.MAX_VALUE;
+            hwMax = 0;
+            for (int h = 0; h < alive; h++) {
+                double nearest = Double.MAX_VALUE;
+                for (int w = 0; w < wards; w++) {
+                    nearest = Math.min(nearest, Math.hypot(heroX[h] - s.wardX[t][w], heroY[h] - s.wardY[t][w]));
+                }
+                sum += nearest;
+                hwMin = Math.min(hwMin, nearest);
+                hwMax = Math.max(hwMax, nearest);
+            }
+            hwMean = sum / alive;
+        }
+
+        teamNums[out++] = (float) Math.log1p(wards);
+        teamNums[out++] = (float) Math.log1p(round2(pdistMean));
+        teamNums[out++] = (float) Math.log1p(round2(pdistMax));
+        teamNums[out++] = (float) Math.log1p(round2(pdistStd));
+        teamNums[out++] = (float) Math.log1p(round2(centroidWardMean));
+        teamNums[out++] = (float) Math.log1p(round2(hwMean));
+        teamNums[out++] = (float) Math.log1p(round2(hwMin));
+        teamNums[out] = (float) Math.log1p(round2(hwMax));
+    }
+
+    // the notebook rounds the derived team features to two decimals
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    int getUnknownHeroes() {
+        return unknownHeroes;
+    }
+}
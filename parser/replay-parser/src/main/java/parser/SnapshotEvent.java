@@ -0,0 +1,34 @@
+package parser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning the extraction and writing of one snapshot. Disabled
+ * unless the recording turns on parser.Snapshot, as it fires every sample.
+ */
+@Name("parser.Snapshot")
+@Label("Snapshot")
+@Category({"Replay Parser"})
+@Description("One snapshot extracted from the entities and written to the sink")
+@Enabled(false)
+class SnapshotEvent extends Event {
+
+    @Label("Tick")
+    int tick;
+
+    @Label("Match Time")
+    float matchTime;
+
+    @Label("Entities Scanned")
+    int entitiesScanned;
+
+    @Label("Writing Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long writingNanos;
+}
@@ -0,0 +1,23 @@
+package parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives every sampled snapshot of a replay. The MatchState is reused
+ * between snapshots, so a sink must consume it before {@link #write} returns.
+ * {@link #close} finishes the output.
+ *
+ * Implementations: JsonSnapshotSink, NdjsonSnapshotSink, BinarySnapshotSink,
+ * ColumnarSnapshotSink, DeltaSnapshotSink and TensorSnapshotSink write the
+ * output formats; AsyncSnapshotSink runs any of them on a writer thread and
+ * InferenceSnapshotSink adds the model's win probability in front of them.
+ */
+public interface SnapshotSink extends Closeable {
+
+    /**
+     * @param matchTime seconds since the game started; whole seconds unless
+     *                  the scheduler samples more often than once a second
+     */
+    void write(float matchTime, MatchState state) throws IOException;
+}
@@ -0,0 +1,220 @@
+package parser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams snapshots field by field from a MatchState into a JsonGenerator.
+ *
+ * The output is byte-identical to serializing
+ * {"radiant": state.toTeam(0), "dire": state.toTeam(1)} with an ObjectMapper
+ * that has ORDER_MAP_ENTRIES_BY_KEYS enabled: map keys are sorted, bean
+ * fields keep their declaration order and nulls are written. The
+ * exceptions are the "map" object of MapIndex features, the "recent"
+ * objects of CombatLogAggregator counts and the model's
+ * "radiantWinProbability" next to the teams, which toTeam doesn't have and
+ * which are only written when the state has them.
+ */
+public class SnapshotWriter {
+
+    static final String[] BUILDING_KEYS = {
+        "topTier1", "topTier2", "topTier3",
+        "midTier1", "midTier2", "midTier3",
+        "botTier1", "botTier2", "botTier3",
+        "tier4a", "tier4b",
+        "topRaxMelee", "topRaxRanged",
+        "midRaxMelee", "midRaxRanged",
+        "botRaxMelee", "botRaxRanged",
+        "ancient"
+    };
+
+    // slots in the key order Jackson's ORDER_MAP_ENTRIES_BY_KEYS would use
+    static final int[] SORTED_BUILDING_SLOTS = sortedSlots();
+
+    private static int[] sortedSlots() {
+        String[] sorted = BUILDING_KEYS.clone();
+        Arrays.sort(sorted);
+        int[] slots = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            slots[i] = Arrays.asList(BUILDING_KEYS).indexOf(sorted[i]);
+        }
+        return slots;
+    }
+
+    private final JsonGenerator gen;
+
+    public SnapshotWriter(JsonGenerator gen) {
+        this.gen = gen;
+    }
+
+    public void write(float matchTime, MatchState state) throws IOException {
+        gen.writeFieldName(key(matchTime));
+        gen.writeStartObject();
+        writeTeams(state);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the "dire" and "radiant" fields into the current object, then
+     * "radiantWinProbability" if the state has one (null before the model
+     * has a full window).
+     */
+    public void writeTeams(MatchState state) throws IOException {
+        gen.writeFieldName("dire");
+        writeTeam(state, 1);
+        gen.writeFieldName("radiant");
+        writeTeam(state, 0);
+        if (state.hasWinProbability) {
+            writeWinProbability(gen, state);
+        }
+    }
+
+    static void writeWinProbability(JsonGenerator gen, MatchState state) throws IOException {
+        gen.writeFieldName("radiantWinProbability");
+        if (Float.isNaN(state.radiantWinProbability)) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(state.radiantWinProbability);
+        }
+    }
+
+    /**
+     * Snapshot key: "600" for whole seconds, "600.0333" for sub-second samples.
+     */
+    static String key(float matchTime) {
+        int seconds = (int) matchTime;
+        return seconds == matchTime ? String.valueOf(seconds) : Float.toString(matchTime);
+    }
+
+    private void writeTeam(MatchState s, int team) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("teamId", MatchState.teamId(team));
+
+        gen.writeArrayFieldStart("players");
+        for (int i = 0; i < s.rosterSize[team]; i++) {
+            writePlayer(s, s.roster[team][i]);
+        }
+        gen.writeEndArray();
+
+        gen.writeObjectFieldStart("buildings");
+        for (int slot : SORTED_BUILDING_SLOTS) {
+            int b = team * MatchState.BUILDING_SLOTS + slot;
+            if (s.buildingNames[b] == null) continue;
+            gen.writeFieldName(BUILDING_KEYS[slot]);
+            gen.writeStartObject();
+            gen.writeStringField("name", s.buildingNames[b]);
+            gen.writeNumberField("team", MatchState.teamId(team));
+            gen.writeNumberField("health", s.buildingHealth[b]);
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeArrayFieldStart("observerWards");
+        float[] wardX = s.wardX[team];
+        float[] wardY = s.wardY[team];
+        for (int i = 0; i < s.wardCount[team]; i++) {
+            gen.writeStartObject();
+            gen.writeNumberField("x", wardX[i]);
+            gen.writeNumberField("y", wardY[i]);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeNumberField("totalCampsStacked", s.getTeamTotal(team, MatchState.CAMPS_STACKED));
+        gen.writeNumberField("totalRunePickups", s.getTeamTotal(team, MatchState.RUNE_PICKUPS));
+        gen.writeNumberField("totalTowersKilled", s.getTeamTotal(team, MatchState.TOWERS_KILLED));
+        gen.writeNumberField("totalRoshansKilled", s.getTeamTotal(team, MatchState.ROSHANS_KILLED));
+        gen.writeNumberField("totalSmokesUsed", s.getTeamTotal(team, MatchState.SMOKES_USED));
+
+        if (s.hasMapFeatures) {
+            gen.writeObjectFieldStart("map");
+            for (int f = 0; f < MatchState.MAP_FEATURES; f++) {
+                gen.writeNumberField(MatchState.MAP_FEATURE_NAMES[f], s.mapFeatures[team * MatchState.MAP_FEATURES + f]);
+            }
+            gen.writeEndObject();
+        }
+        if (s.hasRecent) {
+            writeRecent(MatchState.RECENT_TEAM_KEYS, s.recentTeam, team);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeRecent(String[] keys, int[] values, int row) throws IOException {
+        gen.writeObjectFieldStart("recent");
+        for (int k = 0; k < keys.length; k++) {
+            gen.writeNumberField(keys[k], values[row * keys.length + k]);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writePlayer(MatchState s, int p) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("key", MatchState.PLAYER_KEYS[p]);
+        writeInt(s, p, "value", MatchState.VALUE);
+        writeInt(s, p, "team", MatchState.TEAM);
+        gen.writeStringField("name", s.names[p]);
+        gen.writeFieldName("steamId");
+        if (s.hasSteamId(p)) gen.writeNumber(s.steamIds[p]); else gen.writeNull();
+        writeInt(s, p, "heroId", MatchState.HERO_ID);
+        writeInt(s, p, "heroVariant", MatchState.HERO_VARIANT);
+        writeInt(s, p, "level", MatchState.LEVEL);
+        writeInt(s, p, "xp", MatchState.XP);
+        writeInt(s, p, "networth", MatchState.NETWORTH);
+        writeInt(s, p, "totalGold", MatchState.TOTAL_GOLD);
+        writeInt(s, p, "currentGold", MatchState.CURRENT_GOLD);
+        writeInt(s, p, "lifeState", MatchState.LIFE_STATE);
+        writeInt(s, p, "respawnSeconds", MatchState.RESPAWN_SECONDS);
+        writeFloat(s, p, "buybackCooldown", MatchState.BUYBACK_COOLDOWN);
+        writeInt(s, p, "heroDamage", MatchState.HERO_DAMAGE);
+        writeInt(s, p, "towerDamage", MatchState.TOWER_DAMAGE);
+        writeInt(s, p, "damageTakenPreReduction", MatchState.DAMAGE_TAKEN_PRE_REDUCTION);
+        writeInt(s, p, "damageTakenPostReduction", MatchState.DAMAGE_TAKEN_POST_REDUCTION);
+        writeFloat(s, p, "healing", MatchState.HEALING);
+        writeInt(s, p, "kills", MatchState.KILLS);
+        writeInt(s, p, "deaths", MatchState.DEATHS);
+        writeInt(s, p, "assists", MatchState.ASSISTS);
+        writeInt(s, p, "lastHits", MatchState.LAST_HITS);
+        writeInt(s, p, "denies", MatchState.DENIES);
+        writeFloat(s, p, "teamfightParticipation", MatchState.TEAMFIGHT_PARTICIPATION);
+        writeInt(s, p, "obsPlaced", MatchState.OBS_PLACED);
+        writeInt(s, p, "senPlaced", MatchState.SEN_PLACED);
+        writeFloat(s, p, "x", MatchState.X);
+        writeFloat(s, p, "y", MatchState.Y);
+        gen.writeStringField("unit", s.units[p]);
+        writeInventory(s, p);
+        if (s.hasRecent) {
+            writeRecent(MatchState.RECENT_PLAYER_KEYS, s.recentPlayer, p);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeInventory(MatchState s, int p) throws IOException {
+        gen.writeArrayFieldStart("inventory");
+        int base = p * MatchState.INVENTORY_SLOTS;
+        for (int slot = 0; slot < MatchState.INVENTORY_SLOTS; slot++) {
+            int i = base + slot;
+            if (s.itemIds[i] == null) continue;
+            gen.writeStartObject();
+            gen.writeStringField("id", s.itemIds[i]);
+            gen.writeNumberField("slot", slot);
+            gen.writeFieldName("num_charges");
+            if (s.itemCharges[i] != 0) gen.writeNumber(s.itemCharges[i]); else gen.writeNull();
+            gen.writeFieldName("num_secondary_charges");
+            if (s.itemSecondaryCharges[i] != 0) gen.writeNumber(s.itemSecondaryCharges[i]); else gen.writeNull();
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeInt(MatchState s, int p, String name, int field) throws IOException {
+        gen.writeFieldName(name);
+        if (s.hasInt(p, field)) gen.writeNumber(s.getInt(p, field)); else gen.writeNull();
+    }
+
+    private void writeFloat(MatchState s, int p, String name, int field) throws IOException {
+        gen.writeFieldName(name);
+        if (s.hasFloat(p, field)) gen.writeNumber(s.getFloat(p, field)); else gen.writeNull();
+    }
+}
@@ -0,0 +1,179 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a replay as the model input tensors of TimesliceTransformer, one
+ * little-endian .npy file each, so training can np.load(mmap_mode="r")
+ * them instead of featurizing JSON snapshots in Python:
+ *
+ *   hero_ids.npy     int32   [S, 10]      FeatureVocabulary hero indices
+ *   item_ids.npy     int32   [S, 10, 6]   first six items, padding index if fewer
+ *   player_nums.npy  float32 [S, 10, 19]  log1p of SliceEncoder.PLAYER_NUMERIC
+ *   team_nums.npy    float32 [S, 2, 31]   log1p of building health, SliceEncoder.TEAM_NUMERIC
+ *   match_time.npy   float32 [S]
+ *   tick.npy         int32   [S]
+ *   map_features.npy float32 [S, 2, 6]    MapIndex features as is, only with --map-features
+ *   recent_player.npy int32  [S, 10, 12]  RECENT_PLAYER_KEYS counts, only with --recent-stats
+ *   recent_team.npy  int32   [S, 2, 6]    RECENT_TEAM_KEYS counts, only with --recent-stats
+ *   win_probability.npy float32 [S]       radiant win probability, NaN before the first
+ *                                         full window, only with --model
+ *   features.json    feature names, vocabulary signature, unknown hero count
+ *
+ * The slices are featurized by SliceEncoder, as the data_processing
+ * notebook does.
+ */
+public class TensorSnapshotSink implements SnapshotSink {
+
+    public static final int SLICE_PLAYERS = SliceEncoder.PLAYERS;
+    public static final int SLICE_ITEMS = SliceEncoder.ITEMS;
+
+    static final int RECENT_PLAYER = MatchState.RECENT_PLAYER_KEYS.length;
+    static final int RECENT_TEAM = MatchState.RECENT_TEAM_KEYS.length;
+    private static final int PLAYER_FEATURES = SliceEncoder.PLAYER_FEATURES;
+    private static final int TEAM_FEATURES = SliceEncoder.TEAM_FEATURES;
+
+    private final File outputDir;
+    private final FeatureVocabulary vocabulary;
+    private final SliceEncoder encoder;
+
+    private int size = 0;
+    private int[] heroIds = new int[64 * SLICE_PLAYERS];
+    private int[] itemIds = new int[64 * SLICE_PLAYERS * SLICE_ITEMS];
+    private float[] playerNums = new float[64 * SLICE_PLAYERS * PLAYER_FEATURES];
+    private float[] teamNums = new float[64 * MatchState.TEAMS * TEAM_FEATURES];
+    private float[] matchTimes = new float[64];
+    private int[] ticks = new int[64];
+    private float[] mapFeatures = new float[64 * MatchState.TEAMS * MatchState.MAP_FEATURES];
+    private boolean hasMapFeatures = false;
+    private int[] recentPlayer = new int[64 * SLICE_PLAYERS * RECENT_PLAYER];
+    private int[] recentTeam = new int[64 * MatchState.TEAMS * RECENT_TEAM];
+    private boolean hasRecent = false;
+    private float[] winProbabilities = new float[64];
+    private boolean hasWinProbability = false;
+
+    public TensorSnapshotSink(String outputPath, FeatureVocabulary vocabulary) throws IOException {
+        if (vocabulary == null) {
+            throw new IllegalArgumentException("The tensors format needs a vocabulary (--vocab DIR)");
+        }
+        this.vocabulary = vocabulary;
+        encoder = new SliceEncoder(vocabulary);
+        outputDir = new File(outputPath);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Can't create output directory " + outputPath);
+        }
+    }
+
+    @Override
+    public void write(float matchTime, MatchState state) throws IOException {
+        grow();
+        matchTimes[size] = matchTime;
+        ticks[size] = state.tick;
+        encoder.encode(state, size, heroIds, itemIds, playerNums, teamNums);
+
+        if (state.hasRecent) {
+            // in the slice's player order
+            int slot = 0;
+            for (int t = 0; t < MatchState.TEAMS; t++) {
+                for (int i = 0; i < state.rosterSize[t] && slot < SLICE_PLAYERS; i++) {
+                    int row = size * SLICE_PLAYERS + slot++;
+                    System.arraycopy(state.recentPlayer, state.roster[t][i] * RECENT_PLAYER, recentPlayer, row * RECENT_PLAYER, RECENT_PLAYER);
+                }
+            }
+            Arrays.fill(recentPlayer, (size * SLICE_PLAYERS + slot) * RECENT_PLAYER, (size + 1) * SLICE_PLAYERS * RECENT_PLAYER, 0);
+            System.arraycopy(state.recentTeam, 0, recentTeam, size * state.recentTeam.length, state.recentTeam.length);
+            hasRecent = true;
+        }
+        winProbabilities[size] = state.radiantWinProbability;
+        hasWinProbability |= state.hasWinProbability;
+        if (state.hasMapFeatures) {
+            System.arraycopy(state.mapFeatures, 0, mapFeatures, size * state.mapFeatures.length, state.mapFeatures.length);
+            hasMapFeatures = true;
+        }
+        size++;
+    }
+
+    private void grow() {
+        if (size < ticks.length) {
+            return;
+        }
+        int capacity = ticks.length * 2;
+        heroIds = Arrays.copyOf(heroIds, capacity * SLICE_PLAYERS);
+        itemIds = Arrays.copyOf(itemIds, capacity * SLICE_PLAYERS * SLICE_ITEMS);
+        playerNums = Arrays.copyOf(playerNums, capacity * SLICE_PLAYERS * PLAYER_FEATURES);
+        teamNums = Arrays.copyOf(teamNums, capacity * MatchState.TEAMS * TEAM_FEATURES);
+        matchTimes = Arrays.copyOf(matchTimes, capacity);
+        ticks = Arrays.copyOf(ticks, capacity);
+        mapFeatures = Arrays.copyOf(mapFeatures, capacity * MatchState.TEAMS * MatchState.MAP_FEATURES);
+        recentPlayer = Arrays.copyOf(recentPlayer, capacity * SLICE_PLAYERS * RECENT_PLAYER);
+        recentTeam = Arrays.copyOf(recentTeam, capacity * MatchState.TEAMS * RECENT_TEAM);
+        winProbabilities = Arrays.copyOf(winProbabilities, capacity);
+    }
+
+    public int getUnknownHeroes() {
+        return encoder.getUnknownHeroes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        NpyWriter.writeInts(new File(outputDir, "hero_ids.npy"), heroIds, size * SLICE_PLAYERS, size, SLICE_PLAYERS);
+        NpyWriter.writeInts(new File(outputDir, "item_ids.npy"), itemIds, size * SLICE_PLAYERS * SLICE_ITEMS,
+            size, SLICE_PLAYERS, SLICE_ITEMS);
+        NpyWriter.writeFloats(new File(outputDir, "player_nums.npy"), playerNums, size * SLICE_PLAYERS * PLAYER_FEATURES,
+            size, SLICE_PLAYERS, PLAYER_FEATURES);
+        NpyWriter.writeFloats(new File(outputDir, "team_nums.npy"), teamNums, size * MatchState.TEAMS * TEAM_FEATURES,
+            size, MatchState.TEAMS, TEAM_FEATURES);
+        NpyWriter.writeFloats(new File(outputDir, "match_time.npy"), matchTimes, size, size);
+        NpyWriter.writeInts(new File(outputDir, "tick.npy"), ticks, size, size);
+        if (hasMapFeatures) {
+            NpyWriter.writeFloats(new File(outputDir, "map_features.npy"), mapFeatures, size * MatchState.TEAMS * MatchState.MAP_FEATURES,
+                size, MatchState.TEAMS, MatchState.MAP_FEATURES);
+        }
+        if (hasRecent) {
+            NpyWriter.writeInts(new File(outputDir, "recent_player.npy"), recentPlayer, size * SLICE_PLAYERS * RECENT_PLAYER,
+                size, SLICE_PLAYERS, RECENT_PLAYER);
+            NpyWriter.writeInts(new File(outputDir, "recent_team.npy"), recentTeam, size * MatchState.TEAMS * RECENT_TEAM,
+                size, MatchState.TEAMS, RECENT_TEAM);
+        }
+        if (hasWinProbability) {
+            NpyWriter.writeFloats(new File(outputDir, "win_probability.npy"), winProbabilities, size, size);
+        }
+
+        List<String> playerFeatures = new ArrayList<>();
+        for (int field : SliceEncoder.PLAYER_NUMERIC) {
+            playerFeatures.add(field >= 0 ? MatchState.INT_FIELD_NAMES[field] : MatchState.FLOAT_FIELD_NAMES[-1 - field]);
+        }
+        List<String> teamFeatures = new ArrayList<>();
+        for (int slot : SnapshotWriter.SORTED_BUILDING_SLOTS) {
+            teamFeatures.add(SnapshotWriter.BUILDING_KEYS[slot]);
+        }
+        teamFeatures.addAll(Arrays.asList(SliceEncoder.TEAM_NUMERIC));
+
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("slices", size);
+        meta.put("playerFeatures", playerFeatures);
+        meta.put("teamFeatures", teamFeatures);
+        if (hasMapFeatures) {
+            meta.put("mapFeatures", Arrays.asList(MatchState.MAP_FEATURE_NAMES));
+        }
+        if (hasRecent) {
+            meta.put("recentPlayerFeatures", Arrays.asList(MatchState.RECENT_PLAYER_KEYS));
+            meta.put("recentTeamFeatures", Arrays.asList(MatchState.RECENT_TEAM_KEYS));
+        }
+        meta.put("vocabulary", vocabulary.signature());
+        meta.put("unknownHeroes", getUnknownHeroes());
+        new ObjectMapper().writeValue(new File(outputDir, "features.json"), meta);
+
+        if (getUnknownHeroes() > 0) {
+            System.err.println("Heroes missing from the vocabulary in " + getUnknownHeroes() + " player slices, written as index 0");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Samples at an explicit, sorted list of server ticks.
+ */
+public class TickListScheduler implements SamplingScheduler {
+
+    private final int[] ticks;
+    private int next = 0;
+
+    public TickListScheduler(int[] ticks) {
+        this.ticks = ticks.clone();
+        Arrays.sort(this.ticks);
+    }
+
+    @Override
+    public boolean shouldSample(int tick) {
+        if (next >= ticks.length || tick < ticks[next]) {
+            return false;
+        }
+        // several listed ticks may have been skipped over at once
+        while (next < ticks.length && ticks[next] <= tick) {
+            next++;
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        next = 0;
+    }
+
+    @Override
+    public boolean isSubSecond() {
+        return true;
+    }
+
+    /**
+     * Parses "100,250,900" or "@ticks.txt" (whitespace or comma separated).
+     */
+    public static int[] parseTicks(String spec) throws IOException {
+        String text = spec.startsWith("@")
+            ? new String(Files.readAllBytes(Paths.get(spec.substring(1))), StandardCharsets.UTF_8)
+            : spec;
+        List<Integer> ticks = new ArrayList<>();
+        for (String token : text.split("[,\\s]+")) {
+            if (!token.isEmpty()) {
+                ticks.add(Integer.parseInt(token));
+            }
+        }
+        int[] result = new int[ticks.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ticks.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,190 @@
+package parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * The win-probability model of the training notebooks exported to ONNX
+ * (models.export_win_model), run on the CPU with ONNX Runtime:
+ *
+ *   hero_ids     int64   [B, W, 10]
+ *   item_ids     int64   [B, W, 10, 6]
+ *   player_nums  float32 [B, W, 10, 19]
+ *   team_nums    float32 [B, W, 2, 31]
+ *   -> float32 [B] radiant win probability
+ *
+ * i.e. TimesliceTransformer.encode_sequence, OutcomeMLP and a sigmoid over B
+ * windows of W consecutive slices, featurized by SliceEncoder. W is taken
+ * from the model when it was exported with a fixed window, otherwise it is
+ * DEFAULT_WINDOW, the window_size of the inference notebook.
+ *
+ * The slices of a window are consecutive snapshots, so they only cover the
+ * span of game time the model was trained on when the parser samples at
+ * the interval of the training data. export_win_model records it as the
+ * slice_seconds metadata; models without it are taken to be trained on the
+ * parser's default DEFAULT_SLICE_SECONDS.
+ *
+ * One model is shared by every replay of a batch; ONNX Runtime sessions can
+ * run concurrently.
+ */
+public class WinProbabilityModel implements Closeable {
+
+    public static final int DEFAULT_WINDOW = 20;
+    public static final int DEFAULT_SLICE_SECONDS = 30;
+    static final String SLICE_SECONDS = "slice_seconds";
+    static final String[] INPUTS = {"hero_ids", "item_ids", "player_nums", "team_nums"};
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final int window;
+    private final int sliceSeconds;
+    private final String signature;
+
+    private WinProbabilityModel(OrtEnvironment env, OrtSession session, int window, int sliceSeconds, String signature) {
+        this.env = env;
+        this.session = session;
+        this.window = window;
+        this.sliceSeconds = sliceSeconds;
+        this.signature = signature;
+    }
+
+    /**
+     * Without a session, for tests that override predict().
+     */
+    WinProbabilityModel(int window) {
+        this(null, null, window, DEFAULT_SLICE_SECONDS, "test/" + window);
+    }
+
+    /**
+     * @param threads intra-op threads of one run; batch runs already parse a
+     *                replay per core, so 1 unless there are spare cores
+     */
+    public static WinProbabilityModel load(File file, int threads) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("No model file " + file);
+        }
+        String hash = BatchManifest.sha256(file).substring(0, 12);
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setIntraOpNumThreads(threads);
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            OrtSession session = env.createSession(file.getPath(), options);
+            try {
+                Map<String, NodeInfo> inputs = session.getInputInfo();
+                for (String input : INPUTS) {
+                    if (!inputs.containsKey(input)) {
+                        throw new IOException("Model " + file + " has no input " + input + ", export it with models.export_win_model");
+                    }
+                }
+                int window = DEFAULT_WINDOW;
+                if (inputs.get(INPUTS[0]).getInfo() instanceof TensorInfo) {
+                    long[] shape = ((TensorInfo) inputs.get(INPUTS[0]).getInfo()).getShape();
+                    if (shape.length == 3 && shape[1] > 0) {
+                        window = (int) shape[1];
+                    }
+                }
+                int sliceSeconds = DEFAULT_SLICE_SECONDS;
+                String recorded = session.getMetadata().getCustomMetadata().get(SLICE_SECONDS);
+                if (recorded != null) {
+                    try {
+                        sliceSeconds = Integer.parseInt(recorded.trim());
+                    } catch (NumberFormatException e) {
+                        sliceSeconds = -1;
+                    }
+                    if (sliceSeconds < 1) {
+                        throw new IOException("Model " + file + " has invalid " + SLICE_SECONDS + " metadata " + recorded);
+                    }
+                }
+                return new WinProbabilityModel(env, session, window, sliceSeconds, hash + "/" + window);
+            } catch (IOException | OrtException | RuntimeException e) {
+                // rejected, or getInputInfo/getMetadata failed: no model owns the session
+                try {
+                    session.close();
+                } catch (OrtException closing) {
+                    e.addSuppressed(closing);
+                }
+                throw e;
+            }
+        } catch (OrtException e) {
+            throw new IOException("Can't load model " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Slices per window.
+     */
+    public int window() {
+        return window;
+    }
+
+    /**
+     * Seconds between the slices the model was trained on.
+     */
+    public int sliceSeconds() {
+        return sliceSeconds;
+    }
+
+    /**
+     * Model file hash and window, for the batch signature.
+     */
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Radiant win probabilities of the first batch windows of the given
+     * input arrays, laid out as the model inputs, into probabilities.
+     */
+    public void predict(long[] heroIds, long[] itemIds, float[] playerNums, float[] teamNums, int batch, float[] probabilities)
+            throws IOException {
+        int players = SliceEncoder.PLAYERS;
+        Map<String, OnnxTensor> inputs = new LinkedHashMap<>();
+        try {
+            inputs.put(INPUTS[0], OnnxTensor.createTensor(env, LongBuffer.wrap(heroIds, 0, batch * window * players),
+                new long[] {batch, window, players}));
+            inputs.put(INPUTS[1], OnnxTensor.createTensor(env, LongBuffer.wrap(itemIds, 0, batch * window * players * SliceEncoder.ITEMS),
+                new long[] {batch, window, players, SliceEncoder.ITEMS}));
+            inputs.put(INPUTS[2], OnnxTensor.createTensor(env, FloatBuffer.wrap(playerNums, 0, batch * window * players * SliceEncoder.PLAYER_FEATURES),
+                new long[] {batch, window, players, SliceEncoder.PLAYER_FEATURES}));
+            inputs.put(INPUTS[3], OnnxTensor.createTensor(env, FloatBuffer.wrap(teamNums, 0, batch * window * MatchState.TEAMS * SliceEncoder.TEAM_FEATURES),
+                new long[] {batch, window, MatchState.TEAMS, SliceEncoder.TEAM_FEATURES}));
+            try (OrtSession.Result result = session.run(inputs)) {
+                Object value = result.get(0).getValue();
+                for (int i = 0; i < batch; i++) {
+                    // [B], or [B, 1] when the export kept the last dimension
+                    probabilities[i] = value instanceof float[][] ? ((float[][]) value)[i][0] : ((float[]) value)[i];
+                }
+            }
+        } catch (OrtException e) {
+            throw new IOException("Inference failed: " + e.getMessage(), e);
+        } finally {
+            for (OnnxTensor tensor : inputs.values()) {
+                tensor.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (OrtException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class AsyncSnapshotSinkTest {
+
+    @Test
+    public void writesEverySnapshotInOrderThroughTheBinaryFormat() throws IOException {
+        MatchState state = new MatchState();
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            state.setInt(p, MatchState.TEAM, p < 5 ? 2 : 3);
+            state.names[p] = "player" + p;
+            state.setSteamId(p, 100L + p);
+            state.addToRoster(p, p < 5 ? 2 : 3);
+        }
+        state.buildingNames[0] = "dota_goodguys_tower1_top";
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> expected = new ArrayList<>();
+        // a tiny ring, so the tick thread has to wait for the writer
+        try (AsyncSnapshotSink sink = new AsyncSnapshotSink(new BinarySnapshotSink(bytes), 2)) {
+            for (int i = 0; i < 50; i++) {
+                state.tick = 900 * (i + 1);
+                state.setInt(i % 10, MatchState.KILLS, i);
+                state.setFloat(i % 10, MatchState.X, 100.5f + i);
+                state.buildingHealth[0] = 1800 - i;
+                state.setItem(i % 10, i % 8, "item_" + (i % 3), i, 0);
+                if (i % 7 == 0) state.addWard(i % 2, 50f + i, 60.5f);
+                state.addTeamTotal(1, MatchState.SMOKES_USED, 1);
+                sink.write(30 * (i + 1) + (i % 2) * 0.5f, state);
+                expected.add(json(30 * (i + 1) + (i % 2) * 0.5f, state));
+            }
+        }
+
+        try (BinarySnapshotReader reader = new BinarySnapshotReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            MatchState read = new MatchState();
+            for (String snapshot : expected) {
+                assertTrue(reader.next(read));
+                assertEquals(snapshot, json(reader.matchTime(), read));
+            }
+            assertFalse(reader.next(read));
+        }
+    }
+
+    @Test
+    public void rethrowsWriterFailures() throws IOException {
+        SnapshotSink failing = new SnapshotSink() {
+            @Override
+            public void write(float matchTime, MatchState state) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncSnapshotSink sink = new AsyncSnapshotSink(failing, 1);
+        try {
+            for (int i = 0; i < 10; i++) {
+                sink.write(i, new MatchState());
+            }
+            sink.close();
+            fail("expected the writer's IOException");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    private static String json(float matchTime, MatchState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator gen = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        new SnapshotWriter(gen).write(matchTime, state);
+        gen.writeEndObject();
+        gen.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,111 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+
+public class BatchParserTest {
+
+    @Test
+    public void loadsManifestWithAndWithoutExplicitOutputs() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Path manifest = dir.resolve("manifest.txt");
+        Files.write(manifest, Arrays.asList(
+            "# comment",
+            "replays/1_2.dem",
+            "",
+            "replays/3_4.dem   parsed/3.json"
+        ), StandardCharsets.UTF_8);
+
+        List<BatchParser.Job> jobs = BatchParser.loadJobs(manifest.toString(), "out", OutputFormat.JSON);
+
+        assertEquals(2, jobs.size());
+        assertEquals("replays/1_2.dem", jobs.get(0).replayPath);
+        assertEquals(new File("out", "1_2.json").getPath(), jobs.get(0).outputPath);
+        assertEquals("replays/3_4.dem", jobs.get(1).replayPath);
+        assertEquals("parsed/3.json", jobs.get(1).outputPath);
+    }
+
+    @Test
+    public void loadsDemFilesFromDirectoryInOrder() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Files.createFile(dir.resolve("b.dem"));
+        Files.createFile(dir.resolve("a.dem"));
+        Files.createFile(dir.resolve("notes.txt"));
+
+        List<BatchParser.Job> jobs = BatchParser.loadJobs(dir.toString(), "out", OutputFormat.COLUMNAR);
+
+        assertEquals(2, jobs.size());
+        assertEquals(dir.resolve("a.dem").toString(), jobs.get(0).replayPath);
+        assertEquals(new File("out", "b.columnar").getPath(), jobs.get(1).outputPath);
+    }
+
+    @Test
+    public void manifestSkipsUnchangedReplaysAndSurvivesTornLines() throws IOException {
+        Path dir = Files.createTempDirectory("batch");
+        Path replay = Files.write(dir.resolve("1.dem"), new byte[] {1, 2, 3});
+        Path output = Files.write(dir.resolve("1.json"), new byte[] {'{', '}'});
+        File manifestFile = dir.resolve(BatchManifest.FILE_NAME).toFile();
+        BatchParser.Job job = new BatchParser.Job(replay.toString(), output.toString());
+
+        BatchManifest manifest = new BatchManifest(manifestFile, "v1");
+        BatchManifest.Entry entry = manifest.check(job);
+        assertNotNull(entry);
+        manifest.record(entry, BatchManifest.DONE);
+        manifest.close();
+        Files.write(manifestFile.toPath(), "{\"replay\":\"2.d".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        manifest = new BatchManifest(manifestFile, "v1");
+        assertNull(manifest.check(job));
+        manifest.close();
+
+        assertNotNull(new BatchManifest(manifestFile, "v2").check(job));
+
+        Files.write(replay, new byte[] {1, 2, 3, 4});
+        assertNotNull(new BatchManifest(manifestFile, "v1").check(job));
+    }
+
+    @Test
+    public void signatureChangesWithTheParserClasses() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        Files.createDirectories(classes.resolve("parser"));
+        Files.write(classes.resolve("parser/A.class"), new byte[] {1});
+        Files.write(classes.resolve("parser/B.class"), new byte[] {2});
+        Files.write(classes.resolve("parser/notes.txt"), new byte[] {3});
+        String hash = BatchManifest.classesHash(classes, "parser/");
+
+        Path jar = classes.resolve("parser.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            put(out, "parser/B.class", 2);
+            put(out, "parser/A.class", 1);
+            put(out, "other/C.class", 4);
+        }
+        assertEquals(hash, BatchManifest.classesHash(jar, "parser/"));
+
+        Files.write(classes.resolve("parser/B.class"), new byte[] {5});
+        assertFalse(hash.equals(BatchManifest.classesHash(classes, "parser/")));
+
+        assertTrue(BatchManifest.signature(new ParserOptions()).contains(" code=" + BatchManifest.codeHash() + " "));
+    }
+
+    private static void put(JarOutputStream out, String name, int content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,83 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CombatLogAggregatorTest {
+
+    private static final int WINDOWS = MatchState.RECENT_WINDOWS.length;
+    private static final String AXE = "npc_dota_hero_axe";
+    private static final String LINA = "npc_dota_hero_lina";
+
+    private static int player(MatchState state, int p, int field, int w) {
+        return state.recentPlayer[(p * MatchState.RECENT_PLAYER_FIELDS + field) * WINDOWS + w];
+    }
+
+    private static int team(MatchState state, int t, int field, int w) {
+        return state.recentTeam[(t * MatchState.RECENT_TEAM_FIELDS + field) * WINDOWS + w];
+    }
+
+    @Test
+    public void sumsEventsIntoEachWindow() {
+        CombatLogAggregator aggregator = new CombatLogAggregator(new FieldPathCache());
+        aggregator.bind(3, 300, LINA);
+
+        // axe's gold, oldest first, on both sides of each window edge as of second 1000;
+        // second 880 shares its bucket with 1000 and is dropped when 1000 reuses it
+        int[] seconds = {880, 881, 940, 941, 970, 971, 1000};
+        for (int i = 0; i < seconds.length; i++) {
+            aggregator.addHero(seconds[i], AXE, MatchState.RECENT_GOLD, 1 << (seconds.length - 1 - i));
+        }
+        aggregator.addHero(990, LINA, MatchState.RECENT_XP, 7);
+        aggregator.addTeam(995, 1, MatchState.RECENT_OBJECTIVES);
+        aggregator.addTeam(900, 0, MatchState.RECENT_TEAM_KILLS);
+        // axe was seen before his player was bound
+        aggregator.bind(0, 100, AXE);
+
+        MatchState state = new MatchState();
+        Arrays.fill(state.recentPlayer, -1);
+        aggregator.compute(state, 1000 * ReplayParser.TICK_RATE + 29);
+
+        // 1000: 1, 971: 2, 970: 4, 941: 8, 940: 16, 881: 32
+        assertEquals(1 + 2, player(state, 0, MatchState.RECENT_GOLD, 0));
+        assertEquals(1 + 2 + 4 + 8, player(state, 0, MatchState.RECENT_GOLD, 1));
+        assertEquals(1 + 2 + 4 + 8 + 16 + 32, player(state, 0, MatchState.RECENT_GOLD, 2));
+        assertEquals(0, player(state, 0, MatchState.RECENT_XP, 2));
+        assertEquals(7, player(state, 3, MatchState.RECENT_XP, 0));
+        assertEquals(0, player(state, 3, MatchState.RECENT_GOLD, 2));
+        // unbound players are zeroed
+        assertEquals(0, player(state, 5, MatchState.RECENT_GOLD, 2));
+        assertEquals(1, team(state, 1, MatchState.RECENT_OBJECTIVES, 0));
+        assertEquals(0, team(state, 0, MatchState.RECENT_TEAM_KILLS, 1));
+        assertEquals(1, team(state, 0, MatchState.RECENT_TEAM_KILLS, 2));
+        assertEquals(0, team(state, 1, MatchState.RECENT_TEAM_KILLS, 2));
+
+        // 100 s later the buckets of 1001..1100 still hold 881..980 and are skipped
+        aggregator.compute(state, 1100 * ReplayParser.TICK_RATE);
+        assertEquals(0, player(state, 0, MatchState.RECENT_GOLD, 1));
+        assertEquals(1, player(state, 0, MatchState.RECENT_GOLD, 2));
+        assertEquals(7, player(state, 3, MatchState.RECENT_XP, 2));
+        assertEquals(1, team(state, 1, MatchState.RECENT_OBJECTIVES, 2));
+        assertEquals(0, team(state, 0, MatchState.RECENT_TEAM_KILLS, 2));
+    }
+
+    @Test
+    public void resetForgetsEventsAndBindings() {
+        CombatLogAggregator aggregator = new CombatLogAggregator(new FieldPathCache());
+        aggregator.bind(0, 100, AXE);
+        aggregator.addHero(1000, AXE, MatchState.RECENT_KILLS, 1);
+        aggregator.reset();
+
+        MatchState state = new MatchState();
+        aggregator.compute(state, 1000 * ReplayParser.TICK_RATE);
+        assertEquals(0, player(state, 0, MatchState.RECENT_KILLS, 0));
+
+        aggregator.addHero(1000, LINA, MatchState.RECENT_KILLS, 2);
+        aggregator.bind(0, 100, LINA);
+        aggregator.compute(state, 1000 * ReplayParser.TICK_RATE);
+        assertEquals(2, player(state, 0, MatchState.RECENT_KILLS, 0));
+    }
+}
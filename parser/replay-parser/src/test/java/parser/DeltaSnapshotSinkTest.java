@@ -0,0 +1,75 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class DeltaSnapshotSinkTest {
+
+    @Test
+    public void readerRebuildsEverySnapshot() throws IOException {
+        File file = File.createTempFile("delta", ".delta");
+        file.deleteOnExit();
+
+        MatchState state = new MatchState();
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            state.setInt(p, MatchState.TEAM, p < 5 ? 2 : 3);
+            state.names[p] = "player" + p;
+            state.setSteamId(p, 100L + p);
+            state.addToRoster(p, p < 5 ? 2 : 3);
+        }
+        state.buildingNames[0] = "dota_goodguys_tower1_top";
+        state.buildingHealth[0] = 1800;
+
+        List<String> expected = new ArrayList<>();
+        try (DeltaSnapshotSink sink = new DeltaSnapshotSink(file.getPath(), 3)) {
+            for (int i = 0; i < 5; i++) {
+                state.tick = 900 * (i + 1);
+                state.setInt(i, MatchState.KILLS, i);
+                state.setFloat(i % 2, MatchState.X, 100f + i);
+                state.buildingHealth[0] -= 300;
+                if (i == 1) state.setItem(3, 2, "item_blink", 0, 0);
+                if (i == 3) state.setFloat(1, MatchState.X, (Float) null);
+                if (i >= 2) state.addWard(1, 50f + i, 60.5f);
+                state.addTeamTotal(0, MatchState.TOWERS_KILLED, i % 2);
+                sink.write(30 * (i + 1), state);
+                expected.add(json(30 * (i + 1), state));
+            }
+        }
+
+        DeltaSnapshotReader reader = new DeltaSnapshotReader(file.getPath());
+        assertEquals(5, reader.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected.get(i), json(reader.matchTime(i), reader.stateAt(30 * (i + 1) + 10)));
+        }
+        assertNull(reader.stateAt(10));
+
+        // deltas are much smaller than keyframes
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(1).length() * 4 < lines.get(0).length());
+    }
+
+    private static String json(float matchTime, MatchState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator gen = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        new SnapshotWriter(gen).write(matchTime, state);
+        gen.writeEndObject();
+        gen.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,49 @@
+package parser;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ExtractionProfileTest {
+
+    @Test
+    public void bundledModelProfileSkipsUnusedFields() throws IOException {
+        ExtractionProfile model = ExtractionProfile.load("model");
+        assertTrue(model.intField(MatchState.HERO_ID));
+        assertTrue(model.floatField(MatchState.X));
+        assertTrue(model.inventory());
+        assertFalse(model.intField(MatchState.HERO_VARIANT));
+        assertFalse(model.floatField(MatchState.HEALING));
+        assertFalse(model.units());
+        // identity fields are always extracted
+        assertTrue(model.intField(MatchState.TEAM));
+    }
+
+    @Test
+    public void leftOutSectionsAreExtractedWhole() throws IOException {
+        ExtractionProfile profile = ExtractionProfile.parse("test", new ObjectMapper().readTree(
+            "{\"players\": [\"kills\"], \"wards\": false}"));
+        assertTrue(profile.intField(MatchState.KILLS));
+        assertFalse(profile.intField(MatchState.DEATHS));
+        assertFalse(profile.needsHeroEntity());
+        assertTrue(profile.teamField(MatchState.SMOKES_USED));
+        assertTrue(profile.buildings());
+        assertFalse(profile.wards());
+    }
+
+    @Test
+    public void rejectsUnknownFields() throws IOException {
+        try {
+            ExtractionProfile.parse("test", new ObjectMapper().readTree("{\"players\": [\"gpm\"]}"));
+            fail("expected an unknown field error");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("gpm"));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InferenceSnapshotSinkTest {
+
+    @Test
+    public void scoresFullWindowsInBatches() throws IOException {
+        Map<Integer, Integer> heroes = new HashMap<>();
+        heroes.put(1, 0);
+        Map<String, Integer> items = new HashMap<>();
+        items.put(FeatureVocabulary.PAD, 0);
+        FeatureVocabulary vocabulary = new FeatureVocabulary(heroes, items);
+
+        // "probability" = level of the first player in the window's last slice
+        List<Integer> batches = new ArrayList<>();
+        WinProbabilityModel model = new WinProbabilityModel(3) {
+            @Override
+            public void predict(long[] heroIds, long[] itemIds, float[] playerNums, float[] teamNums, int batch, float[] probabilities) {
+                batches.add(batch);
+                for (int i = 0; i < batch; i++) {
+                    int lastSlice = i * window() + window() - 1;
+                    probabilities[i] = (float) Math.expm1(playerNums[lastSlice * SliceEncoder.PLAYERS * SliceEncoder.PLAYER_FEATURES]);
+                }
+            }
+        };
+
+        List<Float> written = new ArrayList<>();
+        SnapshotSink collect = new SnapshotSink() {
+            @Override
+            public void write(float matchTime, MatchState state) {
+                assertTrue(state.hasWinProbability);
+                written.add(state.radiantWinProbability);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        MatchState state = new MatchState();
+        state.addToRoster(0, 2);
+        state.setInt(0, MatchState.HERO_ID, 1);
+        try (InferenceSnapshotSink sink = new InferenceSnapshotSink(collect, model, vocabulary, 2)) {
+            for (int n = 0; n < 7; n++) {
+                state.setInt(0, MatchState.LEVEL, n);
+                sink.write(30 * n, state);
+            }
+        }
+
+        assertEquals(7, written.size());
+        assertTrue(Float.isNaN(written.get(0)));
+        assertTrue(Float.isNaN(written.get(1)));
+        for (int n = 2; n < 7; n++) {
+            assertEquals(n, written.get(n), 1e-4);
+        }
+        // [0, 1] has no full window, then [2, 3], [4, 5] and [6] on close
+        assertEquals(5, (int) batches.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(2, (int) Collections.max(batches));
+    }
+
+    @Test
+    public void modelOnlyScoresSnapshotsAtItsSliceInterval() {
+        ParserOptions options = new ParserOptions();
+        options.model = new WinProbabilityModel(3);
+        ParserOptions.checkSliceInterval(options);
+
+        options.intervalTicks = 450;
+        try {
+            ParserOptions.checkSliceInterval(options);
+            fail("expected 15 s snapshots to be rejected by a 30 s model");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("--interval 30"));
+        }
+        assertNull(options.model);
+    }
+}
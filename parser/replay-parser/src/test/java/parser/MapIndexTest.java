@@ -0,0 +1,60 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MapIndexTest {
+
+    @Test
+    public void computesRegionFeatures() {
+        MatchState state = new MatchState();
+        for (int p = 0; p < 2; p++) {
+            state.addToRoster(p, 2);
+            state.addToRoster(p + 5, 3);
+        }
+        // radiant hero next to a dire tower on the dire half, the other one dead
+        state.setFloat(0, MatchState.X, 150f);
+        state.setFloat(0, MatchState.Y, 150f);
+        state.setFloat(1, MatchState.X, 90f);
+        state.setFloat(1, MatchState.Y, 90f);
+        state.setInt(1, MatchState.LIFE_STATE, 1);
+        state.setFloat(5, MatchState.X, 160f);
+        state.setFloat(5, MatchState.Y, 150f);
+        state.setFloat(6, MatchState.X, 160f);
+        state.setFloat(6, MatchState.Y, 150f);
+
+        int tower = MatchState.BUILDING_SLOTS;
+        state.buildingNames[tower] = "npc_dota_badguys_tower1_mid";
+        state.buildingHealth[tower] = 1800;
+        state.buildingX[tower] = 152f;
+        state.buildingY[tower] = 152f;
+
+        state.addWard(0, 128f, 128f);
+
+        MapIndex index = new MapIndex();
+        index.compute(state);
+
+        assertTrue(state.hasMapFeatures);
+        float[] f = state.mapFeatures;
+        int dire = MatchState.MAP_FEATURES;
+        assertEquals(1f, f[MatchState.HEROES_NEAR_ENEMY_BUILDINGS], 0f);
+        assertEquals(1f, f[MatchState.HEROES_ON_ENEMY_SIDE], 0f);
+        assertEquals(0f, f[dire + MatchState.HEROES_NEAR_ENEMY_BUILDINGS], 0f);
+        assertEquals(10f, f[MatchState.CENTROID_DISTANCE], 1e-4f);
+        assertEquals(10f, f[dire + MatchState.CENTROID_DISTANCE], 1e-4f);
+        // a river ward sees some of the river and both halves
+        assertTrue(f[MatchState.VISION_RIVER] > f[MatchState.VISION_OWN_SIDE]);
+        assertTrue(f[MatchState.VISION_OWN_SIDE] > 0);
+        assertTrue(f[MatchState.VISION_ENEMY_SIDE] > 0);
+        assertEquals(0f, f[dire + MatchState.VISION_RIVER], 0f);
+
+        // the grids are reused: the ward is gone and the tower destroyed
+        state.clearWards();
+        state.buildingHealth[tower] = 0;
+        index.compute(state);
+        assertEquals(0f, f[MatchState.VISION_RIVER], 0f);
+        assertEquals(0f, f[MatchState.HEROES_NEAR_ENEMY_BUILDINGS], 0f);
+    }
+}
@@ -0,0 +1,64 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void admitsWhileTheBudgetLasts() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        // more than the whole budget runs alone
+        long b = budget.acquire(500);
+        assertEquals(100, b);
+        budget.release(b);
+        long a = budget.acquire(60);
+        assertEquals(60, budget.getUsed());
+
+        AtomicBoolean admitted = new AtomicBoolean();
+        Thread waiting = new Thread(() -> {
+            try {
+                budget.acquire(50);
+                admitted.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        waiting.join(200);
+        assertFalse(admitted.get());
+        budget.release(a);
+        waiting.join(5000);
+        assertTrue(admitted.get());
+        assertEquals(50, budget.getUsed());
+    }
+
+    @Test
+    public void replayMemoryStreamsLargeReplaysAndShrinksTheWriteRing() throws IOException {
+        File replay = new File(Files.createTempDirectory("budget").toFile(), "match.dem");
+        try (RandomAccessFile f = new RandomAccessFile(replay, "rw")) {
+            f.setLength(64 * MemoryBudget.MB);
+        }
+        ParserOptions options = new ParserOptions();
+        assertTrue(MemoryBudget.mapsReplay(replay.getPath(), options));
+        assertEquals(AsyncSnapshotSink.DEFAULT_CAPACITY, MemoryBudget.writeBuffer(options));
+        long mapped = MemoryBudget.estimate(replay.getPath(), options);
+
+        options.replayMemory = 100 * MemoryBudget.MB;
+        assertFalse(MemoryBudget.mapsReplay(replay.getPath(), options));
+        assertEquals(AsyncSnapshotSink.DEFAULT_CAPACITY, MemoryBudget.writeBuffer(options));
+        options.replayMemory = 2 * MemoryBudget.MB;
+        assertEquals(32, MemoryBudget.writeBuffer(options));
+        assertTrue(MemoryBudget.estimate(replay.getPath(), options) < mapped);
+        assertEquals(8L << 30, ParserOptions.parseSize("8g"));
+    }
+}
@@ -0,0 +1,62 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class NameDictionaryTest {
+
+    @Test
+    public void keepsCodesAcrossRuns() throws IOException {
+        File file = new File(Files.createTempDirectory("names").toFile(), NameDictionary.FILE_NAME);
+        NameDictionary names = NameDictionary.load(file);
+        assertEquals(0, names.code("item_blink"));
+        assertEquals(1, names.code("CDOTA_Unit_Hero_Axe"));
+        assertEquals(0, names.code("item_blink"));
+        names.save(file);
+
+        NameDictionary reloaded = NameDictionary.load(file);
+        assertEquals(2, reloaded.size());
+        assertEquals(1, reloaded.code("CDOTA_Unit_Hero_Axe"));
+        assertEquals(2, reloaded.code("item_tango"));
+    }
+
+    @Test
+    public void binaryFilesShareCodesAndReadAlone() throws IOException {
+        NameDictionary names = new NameDictionary();
+        names.code("item_tango");
+
+        MatchState state = new MatchState();
+        state.names[0] = "player0";
+        state.units[0] = "CDOTA_Unit_Hero_Axe";
+        state.setItem(0, 0, "item_blink", 0, 0);
+        state.setItem(0, 1, "item_tango", 3, 0);
+        state.buildingNames[0] = "dota_goodguys_tower1_top";
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinarySnapshotSink sink = new BinarySnapshotSink(bytes, names)) {
+            sink.write(30, state);
+            sink.write(60, state);
+        }
+        assertEquals(4, names.size());
+
+        try (BinarySnapshotReader reader = new BinarySnapshotReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            MatchState read = new MatchState();
+            for (int i = 0; i < 2; i++) {
+                assertTrue(reader.next(read));
+                assertEquals("player0", read.names[0]);
+                assertEquals("CDOTA_Unit_Hero_Axe", read.units[0]);
+                assertEquals("item_blink", read.itemIds[0]);
+                assertEquals("item_tango", read.itemIds[1]);
+                assertEquals("dota_goodguys_tower1_top", read.buildingNames[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class NdjsonSnapshotSinkTest {
+
+    @Test
+    public void streamsEachSnapshotAsItIsWritten() throws IOException {
+        MatchState state = new MatchState();
+        state.setInt(0, MatchState.TEAM, 2);
+        state.addToRoster(0, 2);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            String address = NdjsonSnapshotSink.TCP_SCHEME + "127.0.0.1:" + server.getLocalPort();
+            try (NdjsonSnapshotSink sink = NdjsonSnapshotSink.connect(address);
+                 Socket consumer = server.accept()) {
+                BufferedReader lines = new BufferedReader(new InputStreamReader(consumer.getInputStream(), StandardCharsets.UTF_8));
+
+                state.tick = 27000;
+                sink.write(600, state);
+                // readable before the sink is closed
+                String line = lines.readLine();
+                assertTrue(line, line.startsWith("{\"matchTime\":600,\"tick\":27000,\"dire\":{\"teamId\":3,"));
+                assertTrue(line, line.contains("\"radiant\":{\"teamId\":2,\"players\":[{\"key\":\"0\""));
+
+                state.tick = 27015;
+                sink.write(600.5f, state);
+                String second = lines.readLine();
+                assertTrue(second, second.startsWith("{\"matchTime\":600.5,\"tick\":27015,"));
+                assertEquals(line.length() + second.length() + 2, sink.getBytesWritten());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class NpyWriterTest {
+
+    @Test
+    public void writesAlignedHeaderAndLittleEndianData() throws IOException {
+        File file = File.createTempFile("npy", ".npy");
+        file.deleteOnExit();
+        NpyWriter.writeInts(file, new int[] {1, -2, 3, 4, 5, 6, 99}, 6, 2, 3);
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((byte) 0x93, buf.get());
+        byte[] magic = new byte[5];
+        buf.get(magic);
+        assertEquals("NUMPY", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(1, buf.get());
+        assertEquals(0, buf.get());
+
+        int headerLen = buf.getShort();
+        assertEquals(0, (10 + headerLen) % 64);
+        byte[] header = new byte[headerLen];
+        buf.get(header);
+        String dict = new String(header, StandardCharsets.US_ASCII);
+        assertTrue(dict, dict.startsWith("{'descr': '<i4', 'fortran_order': False, 'shape': (2, 3), }"));
+        assertTrue(dict.endsWith("\n"));
+
+        assertEquals(6 * 4, buf.remaining());
+        assertEquals(1, buf.getInt());
+        assertEquals(-2, buf.getInt());
+    }
+
+    @Test
+    public void oneDimensionalShapeHasTrailingComma() {
+        String dict = new String(NpyWriter.header("<f4", new int[] {7}), StandardCharsets.US_ASCII);
+        assertTrue(dict, dict.contains("'shape': (7,), }"));
+    }
+}
@@ -0,0 +1,79 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ReplayCacheTest {
+
+    private static File write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void restoresOutputsOfTheSameReplayUnderAnyName() throws IOException {
+        File tmp = Files.createTempDirectory("cache").toFile();
+        File first = write(new File(tmp, "1.dem"), "PBDEMS2 match one");
+        File copy = write(new File(tmp, "copy.dem"), "PBDEMS2 match one");
+        File other = write(new File(tmp, "2.dem"), "PBDEMS2 match two");
+        String key = ReplayCache.key(first.getPath(), "format=JSON");
+        assertEquals(key, ReplayCache.key(copy.getPath(), "format=JSON"));
+        assertFalse(key.equals(ReplayCache.key(copy.getPath(), "format=BINARY")));
+        assertFalse(key.equals(ReplayCache.key(other.getPath(), "format=JSON")));
+
+        ReplayCache cache = new ReplayCache(new File(tmp, "cache"), 1 << 20);
+        cache.store(key, write(new File(tmp, "1.json"), "[{\"tick\":30}]"), null);
+        File restored = new File(tmp, "copy.json");
+        assertTrue(cache.restore(key, restored, null));
+        assertEquals("[{\"tick\":30}]", new String(Files.readAllBytes(restored.toPath()), StandardCharsets.UTF_8));
+
+        // reopened from disk
+        assertTrue(new ReplayCache(new File(tmp, "cache"), 1 << 20).contains(key));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws IOException {
+        File tmp = Files.createTempDirectory("cache").toFile();
+        File output = write(new File(tmp, "out.json"), "0123456789");
+        ReplayCache cache = new ReplayCache(new File(tmp, "cache"), 25);
+        cache.store("a", output, null);
+        cache.store("b", output, null);
+        assertTrue(cache.restore("a", new File(tmp, "a.json"), null));
+        cache.store("c", output, null);
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(20, cache.getTotalBytes());
+        assertFalse(new File(tmp, "cache/b").exists());
+    }
+
+    @Test
+    public void onlyRestoresIntoAnAgreeingNameDictionary() throws IOException {
+        File tmp = Files.createTempDirectory("cache").toFile();
+        File output = write(new File(tmp, "out.bin"), "codes");
+        NameDictionary names = new NameDictionary();
+        names.code("item_blink");
+        names.code("item_tango");
+        ReplayCache cache = new ReplayCache(new File(tmp, "cache"), 1 << 20);
+        cache.store("a", output, names);
+
+        NameDictionary fresh = new NameDictionary();
+        fresh.code("item_blink");
+        assertTrue(cache.restore("a", new File(tmp, "fresh.bin"), fresh));
+        assertEquals(Arrays.asList("item_blink", "item_tango"), fresh.names(2));
+
+        NameDictionary conflicting = new NameDictionary();
+        conflicting.code("item_tango");
+        assertFalse(cache.restore("a", new File(tmp, "conflicting.bin"), conflicting));
+        assertEquals(1, conflicting.size());
+    }
+}
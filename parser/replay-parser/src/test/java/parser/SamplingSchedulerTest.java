@@ -0,0 +1,88 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SamplingSchedulerTest {
+
+    @Test
+    public void fixedIntervalStaysOnGridAndCatchesSkippedTicks() {
+        FixedIntervalScheduler scheduler = new FixedIntervalScheduler(900);
+        List<Integer> sampled = new ArrayList<>();
+        for (int tick = 1000; tick < 4000; tick++) {
+            if (tick == 1800) continue;  // no tick start exactly on the grid
+            if (scheduler.shouldSample(tick)) sampled.add(tick);
+        }
+        assertEquals(3, sampled.size());
+        assertEquals(1801, (int) sampled.get(0));
+        assertEquals(2700, (int) sampled.get(1));
+        assertEquals(3600, (int) sampled.get(2));
+        assertFalse(scheduler.isSubSecond());
+    }
+
+    @Test
+    public void adaptiveSamplesDenselyAfterActivity() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(900, 15, 300);
+        int quiet = 0;
+        for (int tick = 0; tick < 900; tick++) {
+            if (scheduler.shouldSample(tick)) quiet++;
+        }
+        scheduler.markActive(900);
+        int active = 0;
+        for (int tick = 900; tick < 1200; tick++) {
+            if (scheduler.shouldSample(tick)) active++;
+        }
+        assertEquals(1, quiet);
+        assertEquals(20, active);
+        assertTrue(scheduler.isSubSecond());
+    }
+
+    @Test
+    public void adaptiveForgetsProbedActivityOnReset() {
+        // a window seek probes ticks far past the window first
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(900, 15, 300);
+        scheduler.addFightDamage(50000, 1000);
+        scheduler.markActive(60000);
+        scheduler.reset();
+
+        // damage before the probes' window start still adds up to a fight
+        scheduler.addFightDamage(1000, 1000);
+        int quiet = 0;
+        for (int tick = 900; tick < 1050; tick++) {
+            if (scheduler.shouldSample(tick)) quiet++;
+        }
+        assertEquals(1, quiet);
+        scheduler.addFightDamage(1050, 600);
+        int active = 0;
+        for (int tick = 1050; tick < 1350; tick++) {
+            if (scheduler.shouldSample(tick)) active++;
+        }
+        assertEquals(20, active);
+    }
+
+    @Test
+    public void tickListSamplesEachListedTickOnce() throws Exception {
+        TickListScheduler scheduler = new TickListScheduler(TickListScheduler.parseTicks("40, 10 11,90"));
+        List<Integer> sampled = new ArrayList<>();
+        for (int tick = 0; tick < 100; tick += 7) {
+            if (scheduler.shouldSample(tick)) sampled.add(tick);
+        }
+        // 10 and 11 both fall due by tick 14
+        assertEquals(3, sampled.size());
+        assertEquals(14, (int) sampled.get(0));
+        assertEquals(42, (int) sampled.get(1));
+        assertEquals(91, (int) sampled.get(2));
+    }
+
+    @Test
+    public void snapshotKeysAreWholeSecondsUnlessFractional() {
+        assertEquals("600", SnapshotWriter.key(600f));
+        assertEquals("600.5", SnapshotWriter.key(600.5f));
+    }
+}
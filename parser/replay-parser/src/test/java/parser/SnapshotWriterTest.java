@@ -0,0 +1,89 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import parser.ReplayParser.Team;
+
+public class SnapshotWriterTest {
+
+    @Test
+    public void matchesObjectMapperOutput() throws IOException {
+        MatchState state = new MatchState();
+        for (int i = 0; i < MatchState.PLAYERS; i++) {
+            int teamId = i < 5 ? 2 : 3;
+            state.setInt(i, MatchState.VALUE, (teamId == 2 ? 0 : 128) + i % 5);
+            state.setInt(i, MatchState.TEAM, teamId);
+            state.names[i] = "player \"" + i + "\"";
+            state.setSteamId(i, 76561198000000000L + i);
+            state.setInt(i, MatchState.HERO_ID, 10 + i);
+            state.setInt(i, MatchState.LEVEL, 7);
+            state.setInt(i, MatchState.NETWORTH, 4521);
+            state.setFloat(i, MatchState.BUYBACK_COOLDOWN, 0f);
+            state.setFloat(i, MatchState.HEALING, 12.5f);
+            state.setFloat(i, MatchState.TEAMFIGHT_PARTICIPATION, 0.3333333f);
+            state.setFloat(i, MatchState.X, 101.25f);
+            state.setFloat(i, MatchState.Y, 87.0078125f);
+            state.units[i] = "CDOTA_Unit_Hero_Axe";
+            state.setItem(i, 0, "item_black_king_bar", 2, 0);
+            state.setItem(i, 5, "item_ward_observer", 0, 1);
+            state.addToRoster(i, teamId);
+        }
+        state.setFloat(5, MatchState.X, (Float) null);
+        state.clearInventory(5);
+
+        for (int t = 0; t < MatchState.TEAMS; t++) {
+            building(state, t, "topTier1", "tower1_top", 1800);
+            building(state, t, "ancient", "fort", 4500);
+            building(state, t, "botRaxMelee", "rax_melee_bot", 0);
+            state.addTeamTotal(t, MatchState.TOWERS_KILLED, 3);
+        }
+        state.addWard(0, 120.5f, 99.75f);
+
+        assertEquals(legacyJson(600, state.toTeam(0), state.toTeam(1)), streamedJson(600, state));
+    }
+
+    private static void building(MatchState state, int team, String key, String name, int health) {
+        int b = team * MatchState.BUILDING_SLOTS + BuildingTracker.slotOf(key);
+        state.buildingNames[b] = "dota_" + name;
+        state.buildingHealth[b] = health;
+    }
+
+    private static String legacyJson(int matchTime, Team radiant, Team dire) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator gen = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("radiant", radiant);
+        snapshot.put("dire", dire);
+        gen.writeFieldName(String.valueOf(matchTime));
+        mapper.writeValue(gen, snapshot);
+        gen.writeEndObject();
+        gen.close();
+        return out.toString("UTF-8");
+    }
+
+    private static String streamedJson(int matchTime, MatchState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator gen = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        gen.writeStartObject();
+        new SnapshotWriter(gen).write(matchTime, state);
+        gen.writeEndObject();
+        gen.close();
+        return out.toString("UTF-8");
+    }
+}
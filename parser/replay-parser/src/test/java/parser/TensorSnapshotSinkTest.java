@@ -0,0 +1,83 @@
+package parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TensorSnapshotSinkTest {
+
+    @Test
+    public void writesNotebookFeatures() throws IOException {
+        Map<Integer, Integer> heroes = new HashMap<>();
+        heroes.put(1, 0);
+        heroes.put(7, 1);
+        Map<String, Integer> items = new HashMap<>();
+        items.put(FeatureVocabulary.PAD, 0);
+        items.put("item_blink", 1);
+        FeatureVocabulary vocabulary = new FeatureVocabulary(heroes, items);
+
+        MatchState state = new MatchState();
+        for (int p = 0; p < MatchState.PLAYERS; p++) {
+            state.setInt(p, MatchState.TEAM, p < 5 ? 2 : 3);
+            state.addToRoster(p, p < 5 ? 2 : 3);
+            state.setInt(p, MatchState.HERO_ID, 1);
+        }
+        state.setInt(0, MatchState.HERO_ID, 7);
+        state.setItem(0, 3, "item_blink", 0, 0);
+        state.setItem(0, 5, "item_unknown", 0, 0);
+        state.setInt(0, MatchState.KILLS, 3);
+        state.setInt(0, MatchState.LIFE_STATE, 2);
+        state.setInt(1, MatchState.RESPAWN_SECONDS, -5);
+        state.setFloat(1, MatchState.X, 100f);
+        state.setFloat(1, MatchState.Y, 100f);
+        state.setFloat(2, MatchState.X, 103f);
+        state.setFloat(2, MatchState.Y, 104f);
+        state.tick = 27000;
+
+        File dir = Files.createTempDirectory("tensors").toFile();
+        try (TensorSnapshotSink sink = new TensorSnapshotSink(dir.getPath(), vocabulary)) {
+            sink.write(600, state);
+            sink.write(630, state);
+        }
+
+        ByteBuffer heroIds = data(new File(dir, "hero_ids.npy"), "(2, 10)");
+        assertEquals(1, heroIds.getInt(0));
+        assertEquals(0, heroIds.getInt(4));
+
+        ByteBuffer itemIds = data(new File(dir, "item_ids.npy"), "(2, 10, 6)");
+        assertEquals(1, itemIds.getInt(0));
+        assertEquals(0, itemIds.getInt(4));
+
+        ByteBuffer playerNums = data(new File(dir, "player_nums.npy"), "(2, 10, 19)");
+        assertEquals(Math.log1p(3), playerNums.getFloat(11 * 4), 1e-6);
+        assertEquals(Math.log1p(1), playerNums.getFloat(5 * 4), 1e-6);
+        assertEquals(0f, playerNums.getFloat((19 + 6) * 4), 0f);
+
+        ByteBuffer teamNums = data(new File(dir, "team_nums.npy"), "(2, 2, 31)");
+        // radiant: two alive heroes 5 apart, no wards
+        assertEquals(Math.log1p(5), teamNums.getFloat((18 + 6) * 4), 1e-6);
+        assertEquals(Math.log1p(256), teamNums.getFloat((18 + 10) * 4), 1e-6);
+
+        ByteBuffer ticks = data(new File(dir, "tick.npy"), "(2,)");
+        assertEquals(27000, ticks.getInt(4));
+    }
+
+    private static ByteBuffer data(File file, String shape) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        int headerLen = buf.getShort(8);
+        String header = new String(buf.array(), 10, headerLen, StandardCharsets.US_ASCII);
+        assertTrue(header, header.contains("'shape': " + shape));
+        buf.position(10 + headerLen);
+        return buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -30,18 +30,19 @@ def process_match(match):
     cluster = match["cluster"]
     replay_salt = match["replay_salt"]
     replay_url = get_replay_url(cluster, match_id, replay_salt)
+    output_path = f"./data/parsed_replays/{match_id}.json"
+    # the parser only renames a complete output into place, so an existing
+    # file means the match was already parsed by an earlier run
+    if os.path.exists(output_path):
+        return None
     try:
         logging.info(f"Processing match ID: {match_id}")
         logging.info(f"Downloading replay - URL: {replay_url} ...")
         replay_file = download_replay(replay_url, download_path="./data/replays")
-        
-        decompressed_file = replay_file[:-4]
-        logging.info(f"Decompressing replay - File: {replay_file} ...")
-        decompress_replay(replay_file, decompressed_file)
-        logging.info(f"Replay decompressed - File: {decompressed_file}")
-
-        parsed_path = parse_replay(decompressed_file, output_path=f"./data/parsed_replays/{match_id}.json")
-        os.remove(decompressed_file)
+
+        # the parser decompresses .dem.bz2 replays in memory while parsing
+        parsed_path = parse_replay(replay_file, output_path=output_path)
+        os.remove(replay_file)
 
         if not parsed_path:
             return match_id
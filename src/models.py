@@ -125,3 +125,53 @@ class OutcomeMLP(nn.Module):
         x = self.act(x)
         x = self.dropout(x)
         return self.fc2(x).squeeze(-1)
+
+
+class WinProbabilityModel(nn.Module):
+    """
+    TimesliceTransformer encoder + OutcomeMLP + sigmoid, the radiant win
+    probability of each window in a batch, as the parser's --model runs it
+    """
+    def __init__(self, transformer: TimesliceTransformer, mlp: OutcomeMLP):
+        super().__init__()
+        self.transformer = transformer
+        self.mlp = mlp
+
+    def forward(self, hero_ids, item_ids, player_nums, team_nums):
+        ctx = self.transformer.encode_sequence(hero_ids, item_ids, player_nums, team_nums)
+        return torch.sigmoid(self.mlp(ctx))
+
+
+def export_win_model(transformer, mlp, path, window_size=20, slice_seconds=30):
+    """
+    Export the win-probability model to ONNX for the parser's --model
+
+    The window size is fixed in the export (the parser reads it from the
+    model), the batch size is dynamic. `slice_seconds` is the parser
+    interval the training replays were sampled at (the default 30 s); it is
+    stored in the model's metadata and the parser only scores snapshots
+    sampled at that interval.
+    """
+    model = WinProbabilityModel(transformer, mlp).cpu().eval()
+    inputs = (
+        torch.zeros(1, window_size, 10, dtype=torch.long),
+        torch.zeros(1, window_size, 10, 6, dtype=torch.long),
+        torch.zeros(1, window_size, 10, 19),
+        torch.zeros(1, window_size, 2, 31),
+    )
+    names = ["hero_ids", "item_ids", "player_nums", "team_nums"]
+    torch.onnx.export(
+        model, inputs, path,
+        input_names=names,
+        output_names=["radiant_win_probability"],
+        dynamic_axes={name: {0: "batch"} for name in names + ["radiant_win_probability"]},
+        opset_version=17,
+    )
+
+    import onnx
+
+    exported = onnx.load(path)
+    entry = exported.metadata_props.add()
+    entry.key, entry.value = "slice_seconds", str(slice_seconds)
+    onnx.save(exported, path)
+    return path
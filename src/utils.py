@@ -2,6 +2,7 @@ import requests
 import bz2
 
 import os
+import json
 import subprocess
 
 from dotenv import load_dotenv
@@ -126,6 +127,111 @@ def parse_replay(replay_path, output_path):
     return output_path
 
 
+def parse_replays_batch(replay_paths, output_paths, manifest_path="./data/batch_manifest.txt", threads=None, memory_budget=None, cache_dir=None):
+    """
+    Parse many replay files in a single parser JVM
+
+    Writes a "<replay> <output>" manifest and runs the parser in batch mode,
+    which avoids paying JVM startup and warm-up for every replay.
+    Replays are parsed in parallel on `threads` workers (all cores by default);
+    with `memory_budget` (e.g. "12g") a replay only starts while the estimated
+    memory of the running ones leaves room for it. With `cache_dir`, replays
+    that were parsed before with the same options (e.g. a match downloaded
+    again by another sampling run) are copied from that cache instead.
+    """
+    with open(manifest_path, "w") as f:
+        for replay_path, output_path in zip(replay_paths, output_paths):
+            f.write(f"{replay_path} {output_path}\n")
+
+    output_dir = os.path.dirname(output_paths[0]) if output_paths else "."
+    command = ["java", "-jar", "./parser/replay-parser/target/replay-parser-1.0.0.jar", "--batch", manifest_path, output_dir]
+    if threads is not None:
+        command += ["--threads", str(threads)]
+    if memory_budget is not None:
+        command += ["--memory-budget", str(memory_budget)]
+    if cache_dir is not None:
+        command += ["--cache", cache_dir]
+    try:
+        subprocess.run(command, check=True)
+    except subprocess.CalledProcessError as e:
+        print(f"Some replays failed to parse: {e}")
+    return [p for p in output_paths if os.path.exists(p)]
+
+
+def load_columnar_replay(path):
+    """
+    Load a replay written with `--format columnar`
+
+    Every column is memory-mapped from its .npy file. Returns a dict of
+    pandas DataFrames ("players", "teams", "buildings", "wards") plus the
+    string dictionary used by the int-coded columns. Unit, item and building
+    codes are the same across a batch (the batch's names.json), player name
+    codes are per replay.
+    """
+    import numpy as np
+    import pandas as pd
+
+    with open(os.path.join(path, "dictionary.json"), "r") as f:
+        dictionary = json.load(f)
+
+    tables = {}
+    for table in ("players", "teams", "buildings", "wards"):
+        table_dir = os.path.join(path, table)
+        columns = {}
+        if os.path.isdir(table_dir):
+            for name in sorted(os.listdir(table_dir)):
+                if name.endswith(".npy"):
+                    columns[name[:-4]] = np.load(os.path.join(table_dir, name), mmap_mode="r")
+        tables[table] = pd.DataFrame(columns, copy=False)
+    tables["strings"] = dictionary["strings"]
+    return tables
+
+
+def load_tensor_replay(path):
+    """
+    Load a replay written with `--format tensors --vocab DIR`
+
+    Returns a dict of memory-mapped arrays, ready for torch.from_numpy:
+    "hero_ids" [S, 10], "item_ids" [S, 10, 6], "player_nums" [S, 10, 19],
+    "team_nums" [S, 2, 31], "match_time" [S] and "tick" [S]; a window of
+    TimesliceTransformer inputs is a slice [start:start + window_size] of the
+    first four (cast the ids to long for the embeddings). "features" holds
+    the feature names from features.json. Replays parsed with --map-features
+    also have "map_features" [S, 2, 6], with --recent-stats "recent_player"
+    [S, 10, 12] and "recent_team" [S, 2, 6], with --model "win_probability"
+    [S] (NaN before the model's first full window).
+    """
+    import numpy as np
+
+    tensors = {}
+    for name in ("hero_ids", "item_ids", "player_nums", "team_nums", "match_time", "tick"):
+        tensors[name] = np.load(os.path.join(path, name + ".npy"), mmap_mode="r")
+    for name in ("map_features", "recent_player", "recent_team", "win_probability"):
+        if os.path.exists(os.path.join(path, name + ".npy")):
+            tensors[name] = np.load(os.path.join(path, name + ".npy"), mmap_mode="r")
+    with open(os.path.join(path, "features.json"), "r") as f:
+        tensors["features"] = json.load(f)
+    return tensors
+
+
+def stream_snapshots(port, host="127.0.0.1"):
+    """
+    Yield snapshots of a replay while it is being parsed
+
+    Listens on host:port for the parser started with the output
+    `tcp://host:port` (add `--live` to follow a replay that is still being
+    written) and yields one dict per snapshot: "matchTime", "tick", "radiant"
+    and "dire". The parser blocks while this consumer falls behind.
+    """
+    import socket
+
+    with socket.create_server((host, port)) as server:
+        conn, _ = server.accept()
+        with conn, conn.makefile("r", encoding="utf-8") as lines:
+            for line in lines:
+                yield json.loads(line)
+
+
 def send_odota_parse_request(replay_url):
     """
     Send a parse request to running local odota parser